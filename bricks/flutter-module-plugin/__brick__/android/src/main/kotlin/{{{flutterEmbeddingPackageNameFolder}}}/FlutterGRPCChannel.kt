@@ -5,7 +5,7 @@ import {{flutterEmbeddingPackageName}}.CompletionHandler
 
 /**
  * Custom gRPC Channel implementation that converts requests to binary format,
- * sends them via invokeHandover with request bytes in data map, and converts the response bytes back to the response type.
+ * sends them via invokeGrpc as a binary frame, and converts the response bytes back to the response type.
  */
 class FlutterGRPCChannel(
     private val flutterModuleEmbedding: {{flutterEmbeddingName}},
@@ -72,49 +72,20 @@ class FlutterGRPCChannel(
                 val serviceName = methodDescriptor.serviceName!!
                 val methodName = methodDescriptor.bareMethodName!!
 
-                // Prepare data map with request bytes
-                val data = mapOf("request" to requestBytes, "service" to serviceName, "method" to methodName)
-
-                // Invoke the handler and wait for response
-                val completionHandler = object : CompletionHandler<Any?> {
-                    override fun onSuccess(result: Any?) {
-                        if (result != null) {
+                // Invoke the handler and wait for response, the request bytes are sent as a binary frame
+                val completionHandler = object : CompletionHandler<ByteArray> {
+                    override fun onSuccess(responseBytes: ByteArray?) {
+                        if (responseBytes != null) {
                             try {
-                                // Extract response bytes from the result
-                                val responseBytes = when (result) {
-                                    is ByteArray -> result
-                                    is List<*> -> {
-                                        // Convert List<Byte> or List<Int> to ByteArray if needed
-                                        result.mapNotNull { 
-                                            when (it) {
-                                                is Byte -> it
-                                                is Int -> it.toByte()
-                                                else -> null
-                                            }
-                                        }.toByteArray()
-                                    }
-                                    else -> {
-                                        // Try to convert to ByteArray if possible
-                                        null
-                                    }
-                                }
-
-                                if (responseBytes != null) {
-                                    // Deserialize the response bytes back to ResponseT using the marshaller
-                                    val responseMarshaller = methodDescriptor.responseMarshaller
-                                    val responseInputStream = java.io.ByteArrayInputStream(responseBytes)
-                                    val response = responseMarshaller.parse(responseInputStream)
-
-                                    // Notify the listener
-                                    listener?.onHeaders(responseHeaders)
-                                    listener?.onMessage(response)
-                                    listener?.onClose(Status.OK, responseHeaders)
-                                } else {
-                                    listener?.onClose(
-                                        Status.INTERNAL.withDescription("Response format not supported: ${result::class.java}"),
-                                        responseHeaders
-                                    )
-                                }
+                                // Deserialize the response bytes back to ResponseT using the marshaller
+                                val responseMarshaller = methodDescriptor.responseMarshaller
+                                val responseInputStream = java.io.ByteArrayInputStream(responseBytes)
+                                val response = responseMarshaller.parse(responseInputStream)
+
+                                // Notify the listener
+                                listener?.onHeaders(responseHeaders)
+                                listener?.onMessage(response)
+                                listener?.onClose(Status.OK, responseHeaders)
                             } catch (e: Exception) {
                                 listener?.onClose(
                                     Status.INTERNAL.withDescription("Failed to deserialize response: ${e.message}")
@@ -139,7 +110,7 @@ class FlutterGRPCChannel(
                     }
                 }
                 
-                flutterModuleEmbedding.invokeHandover(serviceName, data, completionHandler)
+                flutterModuleEmbedding.invokeGrpc(serviceName, methodName, requestBytes, completionHandler)
             } catch (e: Exception) {
                 listener?.onClose(
                     Status.INTERNAL.withDescription("Failed to serialize request: ${e.message}")
@@ -52,17 +52,34 @@ class {{flutterEmbeddingName}} {
         {{/handoversToHostServices}}
         completion: CompletionHandler<Boolean>?
     ) {
-        //startConfig is a map with one key "startParams" and one value which is the startParams serialized to a int array
-        val startConfig = "{\"startParams\":" +  startParams.toByteArray().map { it.toInt() }.toString() + "}"
+        // startParams is passed as a binary start config, Dart decodes it straight into the protobuf message
+        val startConfig = startParams.toByteArray()
         var handoverResponder: HandoverResponderInterface = object : HandoverResponderInterface {
             override fun invokeHandover(
                 name: String,
                 data: Map<String?, Any?>,
                 completion: be.krispypen.plugins.flutter_embedding.CompletionHandler<in Any>?
             ) {
-                val serviceName = name
-                val serviceMethod = data["method"] as String
-                val serviceData: ByteArray? = data["data"] as ByteArray?;
+                callService(name, data["method"] as String, data["data"] as ByteArray?, { completion?.onSuccess(it) }, { completion?.onFailure(it) })
+            }
+
+            // Flutter sends gRPC calls as binary frames, so the request bytes arrive without a map around them
+            override fun invokeGrpc(
+                service: String,
+                method: String,
+                request: ByteArray,
+                completion: be.krispypen.plugins.flutter_embedding.CompletionHandler<ByteArray>?
+            ) {
+                callService(service, method, request, { completion?.onSuccess(it) }, { completion?.onFailure(it) })
+            }
+
+            private fun callService(
+                serviceName: String,
+                serviceMethod: String,
+                serviceData: ByteArray?,
+                onSuccess: (ByteArray) -> Unit,
+                onFailure: (Exception) -> Unit
+            ) {
                 val services = listOf<BindableService>(
                     {{#handoversToHostServices}}
                     {{name}},
@@ -144,7 +161,7 @@ class {{flutterEmbeddingName}} {
                                     responseFuture.whenComplete { response, throwable ->
                                         if (throwable != null) {
                                             println("Error: gRPC service implementation failed: ${throwable.message}")
-                                            completion?.onFailure(Exception(throwable))
+                                            onFailure(Exception(throwable))
                                         } else {
                                             // 9. Serialize the response
                                             var responseData: ByteArray = byteArrayOf()
@@ -158,7 +175,7 @@ class {{flutterEmbeddingName}} {
 
                                             println("Successfully called '$serviceMethod'. Response size: ${responseData.size} bytes")
                                             
-                                            completion?.onSuccess(responseData)
+                                            onSuccess(responseData)
                                         }
                                     }
                                     
@@ -166,7 +183,7 @@ class {{flutterEmbeddingName}} {
                                     errorFuture.whenComplete { status, _ ->
                                         if (status != null) {
                                             println("Error: gRPC service implementation failed with status: ${status.code} - ${status.description}")
-                                            completion?.onFailure(Exception("gRPC error: ${status.code} - ${status.description}"))
+                                            onFailure(Exception("gRPC error: ${status.code} - ${status.description}"))
                                         }
                                     }
 
@@ -175,7 +192,7 @@ class {{flutterEmbeddingName}} {
                                 } catch (e: Exception) {
                                     println("Error during dynamic call invocation: ${e.message}")
                                     e.printStackTrace()
-                                    completion?.onFailure(e)
+                                    onFailure(e)
                                 }
                             }
                         }
@@ -196,6 +213,20 @@ class {{flutterEmbeddingName}} {
         FlutterEmbedding.instance().startEngine(context, startConfig, handoverResponder, wrappedCompletion)
     }
 
+    fun prewarm(context: Context, completion: CompletionHandler<Boolean>?) {
+        val wrappedCompletion = if (completion != null) {
+            object : be.krispypen.plugins.flutter_embedding.CompletionHandler<Boolean> {
+                override fun onSuccess(data: Boolean?) {
+                    completion.onSuccess(data)
+                }
+                override fun onFailure(e: Exception) {
+                    completion.onFailure(e)
+                }
+            }
+        } else null
+        FlutterEmbedding.instance().prewarm(context, wrappedCompletion)
+    }
+
     fun getEngine(): FlutterEngine? {
         return FlutterEmbedding.instance().getEngine()
     }
@@ -204,6 +235,14 @@ class {{flutterEmbeddingName}} {
         FlutterEmbedding.instance().startScreen(context)
     }
 
+    fun startScreen(context: Context, route: String) {
+        FlutterEmbedding.instance().startScreen(context, route)
+    }
+
+    fun prewarmRoute(route: String) {
+        FlutterEmbedding.instance().prewarmRoute(route)
+    }
+
     fun stopEngine() {
         FlutterEmbedding.instance().stopEngine()
     }
@@ -226,6 +265,25 @@ class {{flutterEmbeddingName}} {
         FlutterEmbedding.instance().invokeHandover(eventName, data, wrappedCompletion)
     }
 
+    fun invokeGrpc(
+        service: String,
+        method: String,
+        request: ByteArray,
+        completion: CompletionHandler<ByteArray>?
+    ) {
+        val wrappedCompletion = if (completion != null) {
+            object : be.krispypen.plugins.flutter_embedding.CompletionHandler<ByteArray> {
+                override fun onSuccess(data: ByteArray?) {
+                    completion.onSuccess(data)
+                }
+                override fun onFailure(e: Exception) {
+                    completion.onFailure(e)
+                }
+            }
+        } else null
+        FlutterEmbedding.instance().invokeGrpc(service, method, request, wrappedCompletion)
+    }
+
     fun getOrCreateFragment(activity: FragmentActivity): FlutterEmbeddingFlutterFragment {
         return FlutterEmbedding.instance().getOrCreateFragment(activity)
     }
@@ -18,10 +18,17 @@ class FlutterModuleEmbeddingController extends EmbeddingController {
   Completer<{{startParamsMessage}}> startParams = Completer<{{startParamsMessage}}>();
 
   FlutterModuleEmbeddingController(super.args) {
-    startConfig.future.then((startConfig) {
-      if (startConfig['startParams'] != null) {
-        startParams.complete({{startParamsMessage}}.fromBuffer(List<int>.from(startConfig['startParams'])));
+    binaryStartConfig.future.then((binaryStartConfig) {
+      if (binaryStartConfig != null) {
+        startParams.complete({{startParamsMessage}}.fromBuffer(binaryStartConfig));
+        return;
       }
+      // Hosts that only pass a JSON start config (iOS, React Native, web) send the startParams as a list of ints
+      startConfig.future.then((startConfig) {
+        if (startConfig['startParams'] != null) {
+          startParams.complete({{startParamsMessage}}.fromBuffer(List<int>.from(startConfig['startParams'])));
+        }
+      });
     });
   }
 
@@ -0,0 +1,107 @@
+package be.krispypen.plugins.flutter_rn_embedding;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures both directions of {@link BridgeConverters} for the payloads handovers typically carry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BridgeConvertersBenchmark {
+
+  /// Builds the pure Java maps and arrays, the native ones need the React Native libraries
+  private static final BridgeConverters.WritableFactory JAVA_ONLY = new BridgeConverters.WritableFactory() {
+    @Override
+    public WritableMap createMap() {
+      return new JavaOnlyMap();
+    }
+
+    @Override
+    public WritableArray createArray() {
+      return new JavaOnlyArray();
+    }
+  };
+
+  /// small: a handover with a few fields, list: 1000 small records, binary: a 64 KB request
+  @Param({"small", "list", "binary"})
+  public String payload;
+
+  private Map<String, Object> fromFlutter;
+  private ReadableMap fromJs;
+
+  @Setup
+  public void setUp() {
+    switch (payload) {
+      case "small":
+        fromFlutter = record(42);
+        break;
+      case "list":
+        final List<Object> records = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+          records.add(record(i));
+        }
+        fromFlutter = new HashMap<>();
+        fromFlutter.put("records", records);
+        break;
+      case "binary":
+        final byte[] request = new byte[64 * 1024];
+        new Random(42).nextBytes(request);
+        fromFlutter = new HashMap<>();
+        fromFlutter.put("name", "upload");
+        fromFlutter.put("request", request);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown payload " + payload);
+    }
+    // What JS would send for the same handover
+    fromJs = BridgeConverters.convertToWritableMap(fromFlutter, JAVA_ONLY);
+  }
+
+  @Benchmark
+  public Map<String, Object> readableMapToMap() {
+    return BridgeConverters.convertReadableMapToMap(fromJs);
+  }
+
+  @Benchmark
+  public WritableMap mapToWritableMap() {
+    return BridgeConverters.convertToWritableMap(fromFlutter, JAVA_ONLY);
+  }
+
+  private static Map<String, Object> record(int id) {
+    final Map<String, Object> address = new HashMap<>();
+    address.put("street", "Main street");
+    address.put("number", id % 200);
+
+    final Map<String, Object> record = new HashMap<>();
+    record.put("id", id);
+    record.put("timestamp", 1_700_000_000_000L + id);
+    record.put("amount", id * 1.25);
+    record.put("name", "Record " + id);
+    record.put("active", id % 2 == 0);
+    record.put("note", null);
+    record.put("address", address);
+    record.put("scores", new int[]{id, id + 1, id + 2});
+    return record;
+  }
+}
@@ -0,0 +1,21 @@
+package android.util;
+
+/**
+ * The part of android.util.Base64 the converters use, on top of java.util.Base64, so they run on
+ * the JVM. Only compiled into the benchmarks.
+ */
+public final class Base64 {
+
+  public static final int NO_WRAP = 2;
+
+  private Base64() {
+  }
+
+  public static byte[] decode(String str, int flags) {
+    return java.util.Base64.getDecoder().decode(str);
+  }
+
+  public static String encodeToString(byte[] input, int flags) {
+    return java.util.Base64.getEncoder().encodeToString(input);
+  }
+}
@@ -0,0 +1,71 @@
+package be.krispypen.plugins.flutter_rn_embedding;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the events to JS that arrive in the same main looper tick into one emit, so event storms
+ * from analytics heavy Flutter screens don't flood the bridge queue.
+ * <p>
+ * A single event is emitted as is, several ones as one {@link #BATCH_EVENT} with the events in
+ * order under {@link #EVENTS_KEY}.
+ */
+class BatchedEventEmitter implements EventEmitterProtocol {
+
+  static final String BATCH_EVENT = "invokeHandovers";
+  static final String EVENTS_KEY = "events";
+  private static final String EVENT_NAME_KEY = "eventName";
+  private static final String DATA_KEY = "data";
+
+  private final EventEmitterProtocol eventEmitter;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable flush = this::flush;
+
+  /// Only touched while holding the lock on this
+  private List<Map<String, Object>> pending = new ArrayList<>();
+
+  BatchedEventEmitter(@NonNull EventEmitterProtocol eventEmitter) {
+    this.eventEmitter = eventEmitter;
+  }
+
+  @Override
+  public void invokeHandover(@NonNull String eventName, @NonNull Map<String, Object> data) {
+    final Map<String, Object> event = new HashMap<>();
+    event.put(EVENT_NAME_KEY, eventName);
+    event.put(DATA_KEY, data);
+
+    synchronized (this) {
+      pending.add(event);
+      if (pending.size() > 1) {
+        // A flush is already scheduled
+        return;
+      }
+    }
+    handler.post(flush);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void flush() {
+    final List<Map<String, Object>> events;
+    synchronized (this) {
+      events = pending;
+      pending = new ArrayList<>();
+    }
+
+    if (events.size() == 1) {
+      final Map<String, Object> event = events.get(0);
+      eventEmitter.invokeHandover((String) event.get(EVENT_NAME_KEY), (Map<String, Object>) event.get(DATA_KEY));
+    } else if (!events.isEmpty()) {
+      final Map<String, Object> batch = new HashMap<>();
+      batch.put(EVENTS_KEY, events);
+      eventEmitter.invokeHandover(BATCH_EVENT, batch);
+    }
+  }
+}
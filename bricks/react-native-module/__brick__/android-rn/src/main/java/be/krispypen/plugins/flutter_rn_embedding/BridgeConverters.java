@@ -0,0 +1,268 @@
+package be.krispypen.plugins.flutter_rn_embedding;
+
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts handover data between the React Native bridge types and the plain Java values
+ * FlutterEmbedding passes around.
+ * <p>
+ * Only depends on the bridge interfaces, so the benchmarks in android-rn/benchmarks run it on the
+ * JVM with JavaOnlyMap and JavaOnlyArray.
+ */
+final class BridgeConverters {
+
+  /// The binary value of a completable event response, see {@link CompletableEventEmitterDecorator}
+  static final String RESPONSE_KEY = "_completable_event_response";
+  /// The largest integer a JS number holds without loss
+  private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+  /// Off by default, Dart code reads numbers from JS as double and an Integer would fail its cast
+  private static volatile boolean narrowIntegers = false;
+
+  /**
+   * Creates the maps and arrays that go to JS.
+   */
+  interface WritableFactory {
+    @NonNull
+    WritableMap createMap();
+
+    @NonNull
+    WritableArray createArray();
+  }
+
+  /// The native maps and arrays of the bridge, they need the React Native libraries to be loaded
+  static final WritableFactory NATIVE = new WritableFactory() {
+    @NonNull
+    @Override
+    public WritableMap createMap() {
+      return Arguments.createMap();
+    }
+
+    @NonNull
+    @Override
+    public WritableArray createArray() {
+      return Arguments.createArray();
+    }
+  };
+
+  private BridgeConverters() {
+  }
+
+  /**
+   * @param enabled true to pass integral numbers from JS as an Integer, or a Long when they don't
+   *                fit, instead of a Double
+   */
+  static void setNarrowIntegers(boolean enabled) {
+    narrowIntegers = enabled;
+  }
+
+  /**
+   * Converts a map from JS. Numbers become a Double, or with {@link #setNarrowIntegers} an Integer or
+   * a Long when they are integral. The binary values request and
+   * _completable_event_response of the handover envelope become a byte[], nested values with
+   * these keys are left as they are.
+   */
+  static Map<String, Object> convertReadableMapToMap(@NonNull ReadableMap data) {
+    return convertReadableMapToMap(data, true);
+  }
+
+  private static Map<String, Object> convertReadableMapToMap(@NonNull ReadableMap data, boolean envelope) {
+    final Map<String, Object> result = new LinkedHashMap<>();
+    final ReadableMapKeySetIterator iterator = data.keySetIterator();
+    while (iterator.hasNextKey()) {
+      final String key = iterator.nextKey();
+      final ReadableType type = data.getType(key);
+      // Only the envelope holds the values JS encodes with toBinaryValue
+      final boolean binary = envelope && (key.equals("request") || key.equals(RESPONSE_KEY));
+      if (binary && type == ReadableType.String) {
+        result.put(key, Base64.decode(data.getString(key), Base64.NO_WRAP));
+        continue;
+      }
+      if (binary && type == ReadableType.Array) {
+        // Older JS sends one number per byte
+        result.put(key, convertArrayToByteArray(data.getArray(key)));
+        continue;
+      }
+
+      switch (type) {
+        case Null:
+          result.put(key, null);
+          break;
+        case Boolean:
+          result.put(key, data.getBoolean(key));
+          break;
+        case Number:
+          result.put(key, convertNumber(data.getDouble(key)));
+          break;
+        case String:
+          result.put(key, data.getString(key));
+          break;
+        case Map:
+          result.put(key, convertReadableMapToMap(data.getMap(key), false));
+          break;
+        case Array:
+          result.put(key, convertReadableArrayToList(data.getArray(key)));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported type: " + type);
+      }
+    }
+    return result;
+  }
+
+  private static byte[] convertArrayToByteArray(@NonNull ReadableArray data) {
+    final int size = data.size();
+    final byte[] result = new byte[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = (byte) data.getInt(i);
+    }
+    return result;
+  }
+
+  private static List<Object> convertReadableArrayToList(@NonNull ReadableArray data) {
+    final int size = data.size();
+    final List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      switch (data.getType(i)) {
+        case Null:
+          result.add(null);
+          break;
+        case Boolean:
+          result.add(data.getBoolean(i));
+          break;
+        case Number:
+          result.add(convertNumber(data.getDouble(i)));
+          break;
+        case String:
+          result.add(data.getString(i));
+          break;
+        case Map:
+          result.add(convertReadableMapToMap(data.getMap(i), false));
+          break;
+        case Array:
+          result.add(convertReadableArrayToList(data.getArray(i)));
+          break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * JS only has doubles, so with narrowing this is the narrowest type that holds the number without
+   * loss.
+   */
+  private static Object convertNumber(double value) {
+    if (narrowIntegers && value == Math.rint(value) && !Double.isInfinite(value)) {
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+        return (int) value;
+      }
+      if (Math.abs(value) <= MAX_SAFE_INTEGER) {
+        return (long) value;
+      }
+    }
+    return value;
+  }
+
+  static WritableArray convertToWritableArray(@NonNull List<?> data) {
+    return convertToWritableArray(data, NATIVE);
+  }
+
+  static WritableArray convertToWritableArray(@NonNull List<?> data, @NonNull WritableFactory factory) {
+    final WritableArray result = factory.createArray();
+    for (Object value : data) {
+      if (value == null) {
+        result.pushNull();
+      } else if (value instanceof String) {
+        result.pushString((String) value);
+      } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        result.pushInt(((Number) value).intValue());
+      } else if (value instanceof Number) {
+        // Long, Float and Double, JS has no other numbers
+        result.pushDouble(((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        result.pushBoolean((Boolean) value);
+      } else if (value instanceof Map) {
+        result.pushMap(convertToWritableMap((Map<String, Object>) value, factory));
+      } else if (value instanceof List) {
+        result.pushArray(convertToWritableArray((List<?>) value, factory));
+      } else if (value instanceof byte[]) {
+        result.pushString(Base64.encodeToString((byte[]) value, Base64.NO_WRAP));
+      } else {
+        result.pushArray(convertTypedArray(value, factory));
+      }
+    }
+    return result;
+  }
+
+  static WritableMap convertToWritableMap(@NonNull Map<String, Object> data) {
+    return convertToWritableMap(data, NATIVE);
+  }
+
+  static WritableMap convertToWritableMap(@NonNull Map<String, Object> data, @NonNull WritableFactory factory) {
+    final WritableMap result = factory.createMap();
+    for (Map.Entry<String, Object> pair : data.entrySet()) {
+      final String key = pair.getKey();
+      final Object value = pair.getValue();
+      if (value == null) {
+        result.putNull(key);
+      } else if (value instanceof String) {
+        result.putString(key, (String) value);
+      } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        result.putInt(key, ((Number) value).intValue());
+      } else if (value instanceof Number) {
+        // Long, Float and Double, JS has no other numbers
+        result.putDouble(key, ((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        result.putBoolean(key, (Boolean) value);
+      } else if (value instanceof Map) {
+        result.putMap(key, convertToWritableMap((Map<String, Object>) value, factory));
+      } else if (value instanceof List) {
+        result.putArray(key, convertToWritableArray((List<?>) value, factory));
+      } else if (value instanceof byte[]) {
+        result.putString(key, Base64.encodeToString((byte[]) value, Base64.NO_WRAP));
+      } else {
+        result.putArray(key, convertTypedArray(value, factory));
+      }
+    }
+    return result;
+  }
+
+  private static WritableArray convertTypedArray(@NonNull Object value, @NonNull WritableFactory factory) {
+    final WritableArray result = factory.createArray();
+    if (value instanceof int[]) {
+      for (int element : (int[]) value) {
+        result.pushInt(element);
+      }
+    } else if (value instanceof long[]) {
+      for (long element : (long[]) value) {
+        result.pushDouble(element);
+      }
+    } else if (value instanceof double[]) {
+      for (double element : (double[]) value) {
+        result.pushDouble(element);
+      }
+    } else if (value instanceof float[]) {
+      for (float element : (float[]) value) {
+        result.pushDouble(element);
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+    }
+    return result;
+  }
+}
@@ -1,5 +1,7 @@
 package be.krispypen.plugins.flutter_rn_embedding;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -9,20 +11,48 @@ import be.krispypen.plugins.flutter_embedding.CompletionHandler;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CompletableEventEmitterDecorator {
 
   static final String UUID_KEY = "_completable_event_uuid";
   static final String REQUEST_KEY = "_completable_event_request";
-  static final String RESPONSE_KEY = "_completable_event_response";
+  static final String RESPONSE_KEY = BridgeConverters.RESPONSE_KEY;
+
+  /// Waits for JS forever unless a response timeout is set, like before responses could time out
+  static final long DEFAULT_RESPONSE_TIMEOUT_MS = 0;
+
+  private static final String TAG = "CompletableEventEmitterDecorator";
+
+  private static final class Completer {
+    final CompletionHandler<Object> completion;
+    @Nullable
+    Runnable deadline;
+
+    Completer(CompletionHandler<Object> completion) {
+      this.completion = completion;
+    }
+  }
 
   private final EventEmitterProtocol eventEmitter;
-  private final Map<String, CompletionHandler<Object>> completers;
+  /// Completions waiting for JS, keyed by the id JS echoes back as UUID_KEY
+  private final ConcurrentHashMap<Long, Completer> completers = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private volatile long responseTimeout = DEFAULT_RESPONSE_TIMEOUT_MS;
 
   CompletableEventEmitterDecorator(@NonNull EventEmitterProtocol eventEmitter) {
     this.eventEmitter = eventEmitter;
-    completers = new HashMap();
+  }
+
+  /**
+   * @param timeoutInMs how long JS gets to respond to an event, 0 waits forever
+   */
+  void setResponseTimeout(long timeoutInMs) {
+    this.responseTimeout = timeoutInMs;
   }
 
   // Can this work with generics?
@@ -32,33 +62,76 @@ public class CompletableEventEmitterDecorator {
     enveloppeData.put(CompletableEventEmitterDecorator.REQUEST_KEY, data);
 
     if (completion != null) {
-      String uuid;
-      do {
-        uuid = UUID.randomUUID().toString();
-      } while (completers.containsKey(uuid));
-
-      completers.put(uuid, completion);
+      final long id = nextId.incrementAndGet();
+      final Completer completer = new Completer(completion);
+      completers.put(id, completer);
+
+      final long timeout = responseTimeout;
+      if (timeout > 0) {
+        completer.deadline = () -> {
+          if (completers.remove(id, completer)) {
+            expiredCount.incrementAndGet();
+            completion.onFailure(new TimeoutException("JS did not respond to " + eventName + " within " + timeout + "ms"));
+          }
+        };
+        handler.postDelayed(completer.deadline, timeout);
+      }
 
-      enveloppeData.put(CompletableEventEmitterDecorator.UUID_KEY, uuid);
+      // Sent as a string, like the UUIDs JS used to get
+      enveloppeData.put(CompletableEventEmitterDecorator.UUID_KEY, Long.toString(id));
     }
 
     eventEmitter.invokeHandover("invokeHandover", enveloppeData);
   }
 
   void completeEvent(@NonNull String eventName, @NonNull Map data) {
-    final String uuid = (String) data.get(CompletableEventEmitterDecorator.UUID_KEY);
-    final Object response = data.get(CompletableEventEmitterDecorator.RESPONSE_KEY);
+    final Object uuid = data.get(CompletableEventEmitterDecorator.UUID_KEY);
+    if (uuid == null) {
+      return;
+    }
+
+    final Completer completer;
+    try {
+      completer = completers.remove(Long.parseLong(uuid.toString()));
+    } catch (NumberFormatException e) {
+      Log.e(TAG, "Response to " + eventName + " has an unknown id " + uuid);
+      return;
+    }
+    if (completer != null) {
+      if (completer.deadline != null) {
+        handler.removeCallbacks(completer.deadline);
+      }
+      completer.completion.onSuccess(data.get(CompletableEventEmitterDecorator.RESPONSE_KEY));
+    }
+  }
 
-    Log.d("CompletableEventEmitterDecorator", "Complete event " + eventName + " with data " + data);
-    if (uuid != null) {
-       Log.d("CompletableEventEmitterDecorator", "Complete event uuid is not null");
-      final CompletionHandler completer = completers.get(uuid);
+  /**
+   * Fails every completion that is still waiting for JS, for example because the engine stopped.
+   */
+  void failAll(@NonNull Exception reason) {
+    for (Long id : completers.keySet()) {
+      final Completer completer = completers.remove(id);
       if (completer != null) {
-        Log.d("CompletableEventEmitterDecorator", "Complete event completer is not null");
-        completer.onSuccess(response);
-        completers.remove(uuid);
+        if (completer.deadline != null) {
+          handler.removeCallbacks(completer.deadline);
+        }
+        completer.completion.onFailure(reason);
       }
     }
   }
 
+  /**
+   * @return how many events are waiting for a response from JS
+   */
+  int getOutstandingCount() {
+    return completers.size();
+  }
+
+  /**
+   * @return how many events failed because JS didn't respond in time
+   */
+  long getExpiredCount() {
+    return expiredCount.get();
+  }
+
 }
@@ -6,11 +6,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.facebook.react.ReactActivity;
-import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
@@ -18,7 +18,6 @@ import com.facebook.react.modules.core.DeviceEventManagerModule;
 import be.krispypen.plugins.flutter_embedding.CompletionHandler;
 import be.krispypen.plugins.flutter_embedding.FlutterEmbedding;
 
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +29,8 @@ public class FlutterEmbeddingModule extends ReactContextBaseJavaModule implement
   private final FlutterEmbeddingViewManager viewManager;
 
   public static final String REACT_CLASS = "FlutterEmbeddingModule";
+  /// Tells JS how byte[] values cross the bridge, see src/base64.ts
+  static final String BINARY_ENCODING = "base64";
 
   public FlutterEmbeddingModule(ReactApplicationContext reactContext, FlutterEmbeddingViewManager viewManager) {
     super(reactContext);
@@ -70,11 +71,11 @@ public class FlutterEmbeddingModule extends ReactContextBaseJavaModule implement
     }
     viewManager.reset();
     FlutterEmbedding.instance().stopEngine();
+    handoverResponder.failPendingResponses(new Exception("Engine was stopped."));
   }
 
   @ReactMethod
   public void invokeHandoverReturn(@NonNull String name, ReadableMap data, Promise promise) {
-    Log.d(REACT_CLASS, "Invoke Handover Return " + name + " with data " + data);
     final Map<String, Object> newMap = FlutterEmbeddingModule.convertReadableMapToMap(data);
     FlutterEmbedding.instance().invokeHandover(name, newMap, new CompletionHandler<Object>() {
       @Override
@@ -88,7 +89,6 @@ public class FlutterEmbeddingModule extends ReactContextBaseJavaModule implement
   @Override
   public void invokeHandover(@NonNull String eventName, @NonNull Map<String, Object> data) {
     final WritableMap arguments = convertToWritableMap(data);
-    Log.d(REACT_CLASS, "Send Event " + eventName + " with data " + arguments.toString());
     reactContext
       .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
       .emit(eventName, arguments);
@@ -96,10 +96,14 @@ public class FlutterEmbeddingModule extends ReactContextBaseJavaModule implement
 
   @ReactMethod
   void respondToEvent(String eventName, ReadableMap data) {
-    Log.d(REACT_CLASS, "Received response for event " + eventName + " with data " + data);
     this.handoverResponder.handleResponse(eventName, data);
   }
 
+  @ReactMethod
+  void respondToEvents(ReadableArray responses) {
+    this.handoverResponder.handleResponses(responses);
+  }
+
   @Override
   public Map<String, Object> getConstants() {
     final LinkedHashMap constants = new LinkedHashMap();
@@ -107,152 +111,31 @@ public class FlutterEmbeddingModule extends ReactContextBaseJavaModule implement
     constants.put("COMPLETABLE_EVENT_UUID_KEY", CompletableEventEmitterDecorator.UUID_KEY);
     constants.put("COMPLETABLE_EVENT_REQUEST_KEY", CompletableEventEmitterDecorator.REQUEST_KEY);
     constants.put("COMPLETABLE_EVENT_RESPONSE_KEY", CompletableEventEmitterDecorator.RESPONSE_KEY);
+    constants.put("BINARY_ENCODING", BINARY_ENCODING);
     return constants;
   }
 
-  public static Map<String, Object> convertReadableMapToMap(@NonNull ReadableMap data) {
-    Map<String, Object> result = new LinkedHashMap<>();
-    
-    com.facebook.react.bridge.ReadableMapKeySetIterator iterator = data.keySetIterator();
-    while (iterator.hasNextKey()) {
-      String key = iterator.nextKey();
-      if((key.equals("request") || key.equals(CompletableEventEmitterDecorator.RESPONSE_KEY)) && data.getType(key) == com.facebook.react.bridge.ReadableType.Array) {
-        result.put(key, convertArrayToByteArray(data.getArray(key)));
-      } else {
-        switch (data.getType(key)) {
-          case Null:
-            result.put(key, null);
-            break;
-          case Boolean:
-            result.put(key, data.getBoolean(key));
-            break;
-          case Number:
-            result.put(key, data.getDouble(key));
-            break;
-          case String:
-            result.put(key, data.getString(key));
-            break;
-          case Map:
-            result.put(key, convertReadableMapToMap(data.getMap(key)));
-            break;
-          case Array:
-            result.put(key, convertReadableArrayToList(data.getArray(key)));
-            break;
-          default:
-            throw new IllegalArgumentException("Unsupported type: " + data.getType(key));
-        }
-      }
-    }
-
-    Log.d(REACT_CLASS, "convertReadableMapToMap result: " + result);
-    
-    return result;
-  }
-  private static byte[] convertArrayToByteArray(@NonNull com.facebook.react.bridge.ReadableArray data) {
-    byte[] result = new byte[data.size()];
-    for (int i = 0; i < data.size(); i++) {
-      result[i] = (byte) data.getInt(i);
-    }
-    return result;
-  }
-
-  private static List<Object> convertReadableArrayToList(@NonNull com.facebook.react.bridge.ReadableArray data) {
-    List<Object> result = new ArrayList<>();
-    
-    for (int i = 0; i < data.size(); i++) {
-      switch (data.getType(i)) {
-        case Null:
-          result.add(null);
-          break;
-        case Boolean:
-          result.add(data.getBoolean(i));
-          break;
-        case Number:
-          result.add(data.getDouble(i));
-          break;
-        case String:
-          result.add(data.getString(i));
-          break;
-        case Map:
-          result.add(convertReadableMapToMap(data.getMap(i)));
-          break;
-        case Array:
-          result.add(convertReadableArrayToList(data.getArray(i)));
-          break;
-      }
-    }
-
-    Log.d(REACT_CLASS, "convertReadableArrayToList result: " + result);
-    
-    return result;
+  /**
+   * Passes integral numbers from JS to Flutter as int instead of double. Only enable this when the
+   * Dart handlers read these numbers as num or int, a cast to double fails on them.
+   */
+  public static void setNarrowIntegerNumbers(boolean enabled) {
+    BridgeConverters.setNarrowIntegers(enabled);
   }
 
-  private WritableArray convertToWritableArray(@NonNull List<Object> data) {
-    WritableArray result = Arguments.createArray();
-
-    for (Object value : data) {
-      if (value == null) {
-        result.pushNull();
-      } else if (value instanceof String) {
-        result.pushString((String) value);
-      } else if (value instanceof Integer) {
-        result.pushInt((Integer) value);
-      } else if (value instanceof Boolean) {
-        result.pushBoolean((Boolean) value);
-      } else if (value instanceof Double) {
-        result.pushDouble((Double) value);
-      } else if (value instanceof Map) {
-        result.pushMap(convertToWritableMap((Map) value));
-      } else if (value instanceof List) {
-        result.pushArray(convertToWritableArray((List) value));
-      } else if (value instanceof byte[]) {
-        result.pushArray(convertByteToWritableArray((byte[]) value));
-      } else {
-        throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
-      }
-    }
-
-    Log.d(REACT_CLASS, "convertToWritableArray result: " + result);
-
-    return result;
+  /**
+   * Converts a map from JS, see {@link BridgeConverters}.
+   */
+  public static Map<String, Object> convertReadableMapToMap(@NonNull ReadableMap data) {
+    return BridgeConverters.convertReadableMapToMap(data);
   }
 
-  private WritableMap convertToWritableMap(@NonNull Map<String, Object> data) {
-    WritableMap result = Arguments.createMap();
-    for (Map.Entry<String, Object> pair : data.entrySet()) {
-      if (pair.getValue() == null) {
-        result.putNull(pair.getKey());
-      } else if (pair.getValue() instanceof String) {
-        result.putString(pair.getKey(), (String) pair.getValue());
-      } else if (pair.getValue() instanceof Integer) {
-        result.putInt(pair.getKey(), (Integer) pair.getValue());
-      } else if (pair.getValue() instanceof Boolean) {
-        result.putBoolean(pair.getKey(), (Boolean) pair.getValue());
-      } else if (pair.getValue() instanceof Double) {
-        result.putDouble(pair.getKey(), (Double) pair.getValue());
-      } else if (pair.getValue() instanceof Map) {
-        result.putMap(pair.getKey(), convertToWritableMap((Map) pair.getValue()));
-      } else if (pair.getValue() instanceof List) {
-        result.putArray(pair.getKey(), convertToWritableArray((List) pair.getValue()));
-      } else if (pair.getValue() instanceof byte[]) {
-        result.putArray(pair.getKey(), convertByteToWritableArray((byte[]) pair.getValue()));
-      } else {
-        throw new IllegalArgumentException("Unsupported type: " + pair.getValue().getClass().getName());
-      }
-    }
-
-    Log.d(REACT_CLASS, "convertToWritableMap result: " + result);
-    return result;
+  static WritableArray convertToWritableArray(@NonNull List<?> data) {
+    return BridgeConverters.convertToWritableArray(data);
   }
 
-  private WritableArray convertByteToWritableArray(@NonNull byte[] bytes) {
-    WritableArray byteArray = Arguments.createArray();
-    for (byte b : bytes) {
-      // Convert byte to an unsigned integer (0-255) for accurate JS representation
-      // A Java byte is signed (-128 to 127). We need to mask it to get the unsigned value.
-      byteArray.pushInt(b & 0xFF);
-    }
-    return byteArray;
+  static WritableMap convertToWritableMap(@NonNull Map<String, Object> data) {
+    return BridgeConverters.convertToWritableMap(data);
   }
 
 }
@@ -1,29 +1,60 @@
 package be.krispypen.plugins.flutter_rn_embedding;
 
-import com.facebook.react.ReactPackage;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 import com.facebook.react.uimanager.ViewManager;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class FlutterEmbeddingRNModulePackage implements ReactPackage {
+/**
+ * Provides the TurboModule with the new architecture and the classic module with the old one, see
+ * FlutterEmbeddingModuleFactory.
+ */
+public class FlutterEmbeddingRNModulePackage extends TurboReactPackage {
 
-  private FlutterEmbeddingModule module;
+  private NativeModule module;
   private FlutterEmbeddingViewManager viewManager;
 
-  private void initiatePackage(ReactApplicationContext reactContext) {
+  private synchronized void initiatePackage(ReactApplicationContext reactContext) {
     if (viewManager == null && module == null) {
       this.viewManager = new FlutterEmbeddingViewManager(reactContext);
-      this.module = new FlutterEmbeddingModule(reactContext, viewManager);
+      this.module = FlutterEmbeddingModuleFactory.create(reactContext, viewManager);
     }
   }
 
+  @Nullable
   @Override
-  public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
+  public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+    if (!FlutterEmbeddingModule.REACT_CLASS.equals(name)) {
+      return null;
+    }
     initiatePackage(reactContext);
-    return Arrays.asList(module);
+    return module;
+  }
+
+  @Override
+  public ReactModuleInfoProvider getReactModuleInfoProvider() {
+    return () -> {
+      final Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+      moduleInfos.put(FlutterEmbeddingModule.REACT_CLASS, new ReactModuleInfo(
+        FlutterEmbeddingModule.REACT_CLASS,
+        FlutterEmbeddingModule.REACT_CLASS,
+        false, // canOverrideExistingModule
+        false, // needsEagerInit
+        true, // hasConstants
+        false, // isCxxModule
+        FlutterEmbeddingModuleFactory.IS_TURBO_MODULE
+      ));
+      return moduleInfos;
+    };
   }
 
   @Override
@@ -4,6 +4,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import be.krispypen.plugins.flutter_embedding.CompletionHandler;
 import be.krispypen.plugins.flutter_embedding.Handover;
@@ -17,19 +18,58 @@ public class ReactNativeHandoverResponder implements HandoverResponderInterface
   final CompletableEventEmitterDecorator eventEmitter;
 
   ReactNativeHandoverResponder(@NonNull EventEmitterProtocol eventEmitter) {
-    this.eventEmitter = new CompletableEventEmitterDecorator(eventEmitter);
+    this.eventEmitter = new CompletableEventEmitterDecorator(new BatchedEventEmitter(eventEmitter));
   }
 
   void handleResponse(String eventName, ReadableMap data) {
-    Log.d(ReactNativeHandoverResponder.TAG, "Handle response for event " + eventName + " with data " + data);
     Map<String, Object> map = FlutterEmbeddingModule.convertReadableMapToMap(data);
-    Log.d(ReactNativeHandoverResponder.TAG, "Handle response for event " + eventName + " with hashmapdata " + map);
     this.eventEmitter.completeEvent(eventName, map);
   }
 
+  /**
+   * Handles the responses JS sent together with respondToEvents, each one a map with the eventName
+   * and the data of the response.
+   */
+  void handleResponses(ReadableArray responses) {
+    for (int i = 0; i < responses.size(); i++) {
+      final ReadableMap response = responses.getMap(i);
+      handleResponse(response.getString("eventName"), response.getMap("data"));
+    }
+  }
+
+  /**
+   * Fails the handovers that are still waiting for a response from JS.
+   */
+  void failPendingResponses(@NonNull Exception reason) {
+    this.eventEmitter.failAll(reason);
+  }
+
+  /**
+   * Lets handovers fail when JS doesn't respond in time, so dropped responses don't leak. Off by
+   * default.
+   *
+   * @param timeoutInMs how long JS gets to respond to a handover, 0 waits forever
+   */
+  public void setResponseTimeout(long timeoutInMs) {
+    this.eventEmitter.setResponseTimeout(timeoutInMs);
+  }
+
+  /**
+   * @return how many handovers are waiting for a response from JS
+   */
+  public int getOutstandingResponseCount() {
+    return this.eventEmitter.getOutstandingCount();
+  }
+
+  /**
+   * @return how many handovers failed because JS didn't respond in time
+   */
+  public long getExpiredResponseCount() {
+    return this.eventEmitter.getExpiredCount();
+  }
+
   @Override
   public void invokeHandover(@NonNull String name, @NonNull Map<String, Object> data, @NonNull CompletionHandler<Object> completion) {
-    Log.d(ReactNativeHandoverResponder.TAG, "Start invokeHandover " + name + " with data " + data);
     eventEmitter.invokeHandover(name, data, completion);
   }
 
@@ -0,0 +1,16 @@
+package be.krispypen.plugins.flutter_rn_embedding;
+
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * Creates the module for the new architecture, the old architecture has its own version of this
+ * class in src/oldarch.
+ */
+class FlutterEmbeddingModuleFactory {
+  static final boolean IS_TURBO_MODULE = true;
+
+  static NativeModule create(ReactApplicationContext reactContext, FlutterEmbeddingViewManager viewManager) {
+    return new FlutterEmbeddingTurboModule(reactContext, viewManager);
+  }
+}
@@ -0,0 +1,111 @@
+package be.krispypen.plugins.flutter_rn_embedding;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.ReactActivity;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import be.krispypen.plugins.flutter_embedding.CompletionHandler;
+import be.krispypen.plugins.flutter_embedding.FlutterEmbedding;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TurboModule variant of {@link FlutterEmbeddingModule} for the new architecture. Calls arrive
+ * through JSI and events are emitted through the codegen event emitter instead of the
+ * RCTDeviceEventEmitter, so neither goes through the bridge queue.
+ */
+public class FlutterEmbeddingTurboModule extends NativeFlutterEmbeddingModuleSpec implements EventEmitterProtocol {
+
+  private final ReactApplicationContext reactContext;
+  private final ReactNativeHandoverResponder handoverResponder;
+  private final FlutterEmbeddingViewManager viewManager;
+
+  public FlutterEmbeddingTurboModule(ReactApplicationContext reactContext, FlutterEmbeddingViewManager viewManager) {
+    super(reactContext);
+    this.reactContext = reactContext;
+    this.handoverResponder = new ReactNativeHandoverResponder(this);
+    this.viewManager = viewManager;
+  }
+
+  @NonNull
+  @Override
+  public String getName() {
+    return FlutterEmbeddingModule.REACT_CLASS;
+  }
+
+  @Override
+  public void startEngine(String startConfig, Promise promise) {
+    FlutterEmbedding.instance().startEngine(reactContext, startConfig, handoverResponder, "package:{{flutterBaseModuleName}}/main.dart", new CompletionHandler<Boolean>() {
+
+      @Override
+      public void onSuccess(Boolean unused) {
+        promise.resolve(null);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        promise.reject(e);
+      }
+    });
+  }
+
+  @Override
+  public void stopEngine() {
+    try {
+      // clear fragment first, else this will throw an issue
+      FlutterEmbedding.instance().clearFragment((ReactActivity) reactContext.getCurrentActivity());
+    } catch (Exception e) {
+      Log.e(FlutterEmbeddingModule.REACT_CLASS, "Failed to clear fragment. (Because this was just a precaution we continue)", e);
+    }
+    viewManager.reset();
+    FlutterEmbedding.instance().stopEngine();
+    handoverResponder.failPendingResponses(new Exception("Engine was stopped."));
+  }
+
+  @Override
+  public void invokeHandoverReturn(String name, ReadableMap data, Promise promise) {
+    FlutterEmbedding.instance().invokeHandover(name, FlutterEmbeddingModule.convertReadableMapToMap(data), new CompletionHandler<Object>() {
+      @Override
+      public void onSuccess(Object result) { promise.resolve(result);}
+
+      @Override
+      public void onFailure(Exception e) { promise.reject(e);}
+    });
+  }
+
+  @Override
+  public void respondToEvent(String eventName, ReadableMap data) {
+    this.handoverResponder.handleResponse(eventName, data);
+  }
+
+  @Override
+  public void respondToEvents(ReadableArray responses) {
+    this.handoverResponder.handleResponses(responses);
+  }
+
+  @Override
+  public void invokeHandover(@NonNull String eventName, @NonNull Map<String, Object> data) {
+    // Every event to JS is an invokeHandover envelope, or a batch of them, see BatchedEventEmitter
+    if (BatchedEventEmitter.BATCH_EVENT.equals(eventName)) {
+      emitOnInvokeHandovers(FlutterEmbeddingModule.convertToWritableMap(data));
+    } else {
+      emitOnInvokeHandover(FlutterEmbeddingModule.convertToWritableMap(data));
+    }
+  }
+
+  @Override
+  protected Map<String, Object> getTypedExportedConstants() {
+    final Map<String, Object> constants = new HashMap<>();
+    constants.put("COMPLETABLE_EVENT_UUID_KEY", CompletableEventEmitterDecorator.UUID_KEY);
+    constants.put("COMPLETABLE_EVENT_REQUEST_KEY", CompletableEventEmitterDecorator.REQUEST_KEY);
+    constants.put("COMPLETABLE_EVENT_RESPONSE_KEY", CompletableEventEmitterDecorator.RESPONSE_KEY);
+    constants.put("BINARY_ENCODING", FlutterEmbeddingModule.BINARY_ENCODING);
+    return constants;
+  }
+}
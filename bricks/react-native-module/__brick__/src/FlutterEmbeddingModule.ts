@@ -1,10 +1,11 @@
 import type { ClientStreamingCall, DuplexStreamingCall, MethodInfo, RpcOptions, RpcTransport, ServerStreamingCall, ServiceType, UnaryCall } from '@protobuf-ts/runtime-rpc';
 import {
-  EventSubscriptionVendor,
   NativeEventEmitter,
   NativeModules,
 } from 'react-native';
 import 'text-encoding';
+import { encodeBase64, toBytes } from './base64';
+import NativeFlutterEmbeddingModule from './NativeFlutterEmbeddingModule';
 import { StartParams } from './handovers/handovers_to_flutter_service';
 {{#handoversToFlutterServices}}
 import { {{type}}Client } from './handovers/{{snake_name}}.client';
@@ -22,7 +23,7 @@ import type {
 export class MyRpcTransport implements RpcTransport {
   nativeFlutterEmbeddingModule: NativeFlutterEmbeddingModuleType;
   constructor() {
-    this.nativeFlutterEmbeddingModule = NativeModules.FlutterEmbeddingModule;
+    this.nativeFlutterEmbeddingModule = nativeFlutterEmbeddingModule;
   }
   // eslint-disable-next-line @typescript-eslint/no-unused-vars
   mergeOptions(_options?: Partial<RpcOptions>): RpcOptions {
@@ -30,7 +31,7 @@ export class MyRpcTransport implements RpcTransport {
   }
   unary<I extends object, O extends object>(method: MethodInfo<I, O>, input: I, options: RpcOptions): UnaryCall<I, O> {
     console.log('unary call: ', method.service.typeName);
-    let data = Array.from(method.I.toBinary(input));
+    let data = toBinaryValue(method.I.toBinary(input));
     this.nativeFlutterEmbeddingModule.invokeHandoverReturn(method.service.typeName, { 'name': method.service.typeName, 'method': method.name, 'request': data });
     const emptyResponse = method.O.create();
     const promise = Promise.resolve(emptyResponse);
@@ -81,21 +82,42 @@ export class MyRpcTransport implements RpcTransport {
   }
 }
 
-type NativeFlutterEmbeddingModuleType = EventSubscriptionVendor & {
+type EventResponse = { eventName: string; data: { [key: string]: any } };
+
+type NativeFlutterEmbeddingModuleType = {
+  addListener?: (eventType: string) => void;
+  removeListeners?: (count: number) => void;
   startEngine: (startConfig: string) => Promise<void>;
   stopEngine: () => void;
   respondToEvent: (eventName: string, data: { [key: string]: any }) => void;
+  respondToEvents?: (responses: EventResponse[]) => void;
   invokeHandover: (eventName: string, data: { [key: string]: any }) => void;
   invokeHandoverReturn: (eventName: string, data: { [key: string]: any }) => void;
+  BINARY_ENCODING?: string;
 };
 
+// With the old architecture TurboModuleRegistry falls back to the classic bridge module, which
+// has no codegen event emitters, so only use it when it really is a TurboModule
+// eslint-disable-next-line @typescript-eslint/no-explicit-any
+const turboModuleProxyAvailable = (globalThis as any).__turboModuleProxy != null;
+const turboFlutterEmbeddingModule =
+  turboModuleProxyAvailable && typeof NativeFlutterEmbeddingModule?.onInvokeHandover === 'function'
+    ? NativeFlutterEmbeddingModule
+    : null;
+
+// The TurboModule with the new architecture, the classic bridge module otherwise
 const nativeFlutterEmbeddingModule: NativeFlutterEmbeddingModuleType =
-  NativeModules.FlutterEmbeddingModule;
-const eventEmitter = new NativeEventEmitter(nativeFlutterEmbeddingModule);
-let currentHandoverResponder: HandoverResponderInterface;
+  (turboFlutterEmbeddingModule as unknown as NativeFlutterEmbeddingModuleType | null) ?? NativeModules.FlutterEmbeddingModule;
 
+// byte[] values cross the bridge as base64 strings when the native side supports it, else as one number per byte
+const binaryEncoding = turboFlutterEmbeddingModule
+  ? turboFlutterEmbeddingModule.getConstants().BINARY_ENCODING
+  : nativeFlutterEmbeddingModule.BINARY_ENCODING;
+const base64Binary = binaryEncoding === 'base64';
+const toBinaryValue = (bytes: Uint8Array): string | number[] => (base64Binary ? encodeBase64(bytes) : Array.from(bytes));
+let currentHandoverResponder: HandoverResponderInterface;
 
-eventEmitter.addListener("invokeHandover", async (data: any) => {
+const onInvokeHandover = async (data: any) => {
   let name: string = data['name'];
   if (name == "exit") {
     currentHandoverResponder.exit?.();
@@ -103,15 +125,57 @@ eventEmitter.addListener("invokeHandover", async (data: any) => {
     currentHandoverResponder.invokeHandover?.(name, data["_completable_event_request"], (response: any, _error: any) => {
       if (response != null) {
         response["_completable_event_uuid"] = data["_completable_event_uuid"];
-        respondToEvent(name, response);
+        queueResponse(name, response);
       }
     });
   }
-});
+};
+
+// The native side groups the events of one tick into one invokeHandovers event
+const onInvokeHandovers = (batch: any) => {
+  for (const event of batch['events'] as { eventName: string; data: any }[]) {
+    if (event.eventName == "invokeHandover") {
+      onInvokeHandover(event.data);
+    } else if (event.eventName == "exit") {
+      currentHandoverResponder.exit?.();
+    }
+  }
+};
+
+// Responses of one tick go back to the native side in one respondToEvents call when it supports it
+let pendingResponses: EventResponse[] = [];
+const flushResponses = () => {
+  const responses = pendingResponses;
+  pendingResponses = [];
+  if (responses.length == 1) {
+    respondToEvent(responses[0].eventName, responses[0].data);
+  } else if (responses.length > 1) {
+    nativeFlutterEmbeddingModule.respondToEvents?.(responses);
+  }
+};
+const queueResponse = (eventName: string, data: { [key: string]: any }) => {
+  if (!nativeFlutterEmbeddingModule.respondToEvents) {
+    respondToEvent(eventName, data);
+    return;
+  }
+  pendingResponses.push({ eventName, data });
+  if (pendingResponses.length == 1) {
+    setTimeout(flushResponses, 0);
+  }
+};
 
-eventEmitter.addListener("exit", async (_data: any) => {
-  currentHandoverResponder.exit?.();
-});
+if (turboFlutterEmbeddingModule) {
+  // Events arrive through JSI instead of the bridge queue
+  turboFlutterEmbeddingModule.onInvokeHandover(onInvokeHandover);
+  turboFlutterEmbeddingModule.onInvokeHandovers(onInvokeHandovers);
+} else {
+  const eventEmitter = new NativeEventEmitter(nativeFlutterEmbeddingModule);
+  eventEmitter.addListener("invokeHandover", onInvokeHandover);
+  eventEmitter.addListener("invokeHandovers", onInvokeHandovers);
+  eventEmitter.addListener("exit", async (_data: any) => {
+    currentHandoverResponder.exit?.();
+  });
+}
 
 export interface HandoverServiceTuple {
   service: ServiceType;
@@ -136,7 +200,7 @@ const startEngine = ({
       const dataObj = data as { [key: string]: any };
       var serviceName = name
       var serviceMethodName = dataObj["method"] as string
-      var serviceData = dataObj["data"] as Uint8Array;
+      var serviceData = dataObj["data"] as string | number[];
       var uuid = dataObj["_completable_event_uuid"] as string;
 
       for (const { service, instance } of handoverServices) {
@@ -144,12 +208,12 @@ const startEngine = ({
           for (const serviceMethod of service.methods) {
             if (serviceMethod.name == serviceMethodName) {
               const messageType = serviceMethod.I;
-              const uintarray = Uint8Array.from(serviceData);
+              const uintarray = toBytes(serviceData);
               const request = messageType.fromBinary(uintarray);
               const methodFn = (instance as Record<string, unknown>)[serviceMethod.localName] as ((req: unknown, options?: unknown) => PromiseLike<any>);
               // eslint-disable-next-line @typescript-eslint/no-explicit-any
               const response = await methodFn(request, null).then((response: any) => {
-                return Array.from(serviceMethod.O.toBinary(response));
+                return toBinaryValue(serviceMethod.O.toBinary(response));
               });
               completion({ "_completable_event_uuid": uuid, "_completable_event_response": response }, null);
 
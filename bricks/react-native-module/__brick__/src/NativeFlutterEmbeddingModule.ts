@@ -0,0 +1,26 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+import type { EventEmitter, UnsafeObject } from 'react-native/Libraries/Types/CodegenTypes';
+
+/**
+ * The codegen spec of the TurboModule variant of FlutterEmbeddingModule, only available with the
+ * new architecture on React Native 0.76 or newer (codegen event emitters). FlutterEmbeddingModule.ts
+ * falls back to the classic module without it.
+ */
+export interface Spec extends TurboModule {
+  getConstants(): {
+    COMPLETABLE_EVENT_UUID_KEY: string;
+    COMPLETABLE_EVENT_REQUEST_KEY: string;
+    COMPLETABLE_EVENT_RESPONSE_KEY: string;
+    BINARY_ENCODING: string;
+  };
+  startEngine(startConfig: string): Promise<void>;
+  stopEngine(): void;
+  invokeHandoverReturn(name: string, data: UnsafeObject): Promise<UnsafeObject>;
+  respondToEvent(eventName: string, data: UnsafeObject): void;
+  respondToEvents(responses: UnsafeObject[]): void;
+  readonly onInvokeHandover: EventEmitter<UnsafeObject>;
+  readonly onInvokeHandovers: EventEmitter<UnsafeObject>;
+}
+
+export default TurboModuleRegistry.get<Spec>('FlutterEmbeddingModule');
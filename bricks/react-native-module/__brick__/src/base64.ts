@@ -0,0 +1,81 @@
+/**
+ * Base64 codec for binary handover payloads, so a payload crosses the bridge as one string instead
+ * of an array with a boxed number per byte.
+ *
+ * IMPORTANT: keep this in sync with android.util.Base64 (NO_WRAP) used in android-rn
+ */
+const ALPHABET = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+const ENCODE_TABLE: string[] = ALPHABET.split('');
+const DECODE_TABLE = new Uint8Array(128);
+for (let i = 0; i < ALPHABET.length; i++) {
+  DECODE_TABLE[ALPHABET.charCodeAt(i)] = i;
+}
+
+// Strings are built in slices, so huge payloads don't hit the argument limit of fromCharCode
+const SLICE_LENGTH = 3 * 4096;
+
+export const encodeBase64 = (bytes: Uint8Array): string => {
+  const parts: string[] = [];
+  for (let start = 0; start < bytes.length; start += SLICE_LENGTH) {
+    const end = Math.min(start + SLICE_LENGTH, bytes.length);
+    let part = '';
+    let i = start;
+    for (; i + 2 < end; i += 3) {
+      const triplet = (bytes[i] << 16) | (bytes[i + 1] << 8) | bytes[i + 2];
+      part +=
+        ENCODE_TABLE[(triplet >> 18) & 63] +
+        ENCODE_TABLE[(triplet >> 12) & 63] +
+        ENCODE_TABLE[(triplet >> 6) & 63] +
+        ENCODE_TABLE[triplet & 63];
+    }
+    if (end - i === 1) {
+      const single = bytes[i];
+      part += ENCODE_TABLE[single >> 2] + ENCODE_TABLE[(single & 3) << 4] + '==';
+    } else if (end - i === 2) {
+      const pair = (bytes[i] << 8) | bytes[i + 1];
+      part += ENCODE_TABLE[pair >> 10] + ENCODE_TABLE[(pair >> 4) & 63] + ENCODE_TABLE[(pair & 15) << 2] + '=';
+    }
+    parts.push(part);
+  }
+  return parts.join('');
+};
+
+export const decodeBase64 = (base64: string): Uint8Array => {
+  let length = base64.length;
+  while (length > 0 && base64.charCodeAt(length - 1) === 61 /* = */) {
+    length--;
+  }
+
+  const bytes = new Uint8Array((length * 3) >> 2);
+  let offset = 0;
+  let i = 0;
+  for (; i + 3 < length; i += 4) {
+    const quad =
+      (DECODE_TABLE[base64.charCodeAt(i)] << 18) |
+      (DECODE_TABLE[base64.charCodeAt(i + 1)] << 12) |
+      (DECODE_TABLE[base64.charCodeAt(i + 2)] << 6) |
+      DECODE_TABLE[base64.charCodeAt(i + 3)];
+    bytes[offset++] = quad >> 16;
+    bytes[offset++] = (quad >> 8) & 255;
+    bytes[offset++] = quad & 255;
+  }
+  if (length - i === 2) {
+    bytes[offset] = (DECODE_TABLE[base64.charCodeAt(i)] << 2) | (DECODE_TABLE[base64.charCodeAt(i + 1)] >> 4);
+  } else if (length - i === 3) {
+    const triplet =
+      (DECODE_TABLE[base64.charCodeAt(i)] << 10) |
+      (DECODE_TABLE[base64.charCodeAt(i + 1)] << 4) |
+      (DECODE_TABLE[base64.charCodeAt(i + 2)] >> 2);
+    bytes[offset++] = triplet >> 8;
+    bytes[offset] = triplet & 255;
+  }
+  return bytes;
+};
+
+/**
+ * @returns the bytes of a binary handover value, which is a base64 string or an array of bytes
+ * depending on the native side
+ */
+export const toBytes = (value: string | ArrayLike<number>): Uint8Array =>
+  typeof value === 'string' ? decodeBase64(value) : Uint8Array.from(value);
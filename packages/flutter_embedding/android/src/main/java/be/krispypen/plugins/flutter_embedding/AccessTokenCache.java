@@ -0,0 +1,275 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Caches the answers of the host to access token handovers, so Flutter doesn't need a host round
+ * trip for every request of the same token.
+ * <p>
+ * Concurrent requests for the same token share one host call, and tokens that were used are
+ * refreshed in the background shortly before they expire.
+ * <p>
+ * Every engine has its own cache, so engines signed in as different users never share tokens.
+ */
+class AccessTokenCache {
+    private static final String TAG = "AccessTokenCache";
+
+    /// The keys of a map response that hold the lifetime of the token
+    private static final String EXPIRES_IN_SECONDS = "expiresIn";
+    private static final String EXPIRES_AT_EPOCH_MILLIS = "expiresAt";
+
+    /**
+     * Calls the host for a token. The completion must always be called, loads that are never
+     * answered should fail with a timeout, else requests for the key keep waiting on them.
+     */
+    interface Loader {
+        void load(@NonNull CompletionHandler<Object> completion);
+    }
+
+    private static class Entry {
+        @Nullable
+        final Object value;
+        final long expiresAtNanos;
+        @Nullable
+        Runnable refresh;
+        boolean usedSinceLoad = false;
+
+        Entry(@Nullable Object value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * What the caches of all engines are configured with.
+     */
+    static final class Settings {
+        @NonNull
+        final Set<String> handovers;
+        final long defaultTtlInMs;
+        final long refreshBeforeExpiryInMs;
+
+        Settings(@NonNull Set<String> handovers, long defaultTtlInMs, long refreshBeforeExpiryInMs) {
+            this.handovers = handovers;
+            this.defaultTtlInMs = defaultTtlInMs;
+            this.refreshBeforeExpiryInMs = refreshBeforeExpiryInMs;
+        }
+
+        boolean handles(@NonNull String handover) {
+            return handovers.contains(handover);
+        }
+    }
+
+    @NonNull
+    final Settings settings;
+    /// Where refreshes call the host, null is the main thread
+    @Nullable
+    private final Executor refreshExecutor;
+    @NonNull
+    private final Scheduler scheduler;
+
+    /// All guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, List<CompletionHandler<Object>>> inFlight = new HashMap<>();
+    /// Bumped by every invalidate, loads that started before it are not cached
+    private long generation = 0;
+
+    /**
+     * @param refreshExecutor where refreshes call the host, so they run on the thread the engine
+     *                        handles handovers on, null is the main thread
+     */
+    AccessTokenCache(@NonNull Settings settings, @Nullable Executor refreshExecutor) {
+        this(settings, refreshExecutor, Scheduler.SYSTEM);
+    }
+
+    AccessTokenCache(@NonNull Settings settings, @Nullable Executor refreshExecutor, @NonNull Scheduler scheduler) {
+        this.settings = settings;
+        this.refreshExecutor = refreshExecutor;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Answers from the cache, or joins the host call that is already in flight for the key, or
+     * starts a new one with the loader.
+     *
+     * @param refresher loads the token again shortly before it expires, on its own
+     */
+    void get(@NonNull String key, @NonNull Loader loader, @NonNull Loader refresher, @NonNull CompletionHandler<Object> completion) {
+        final Entry hit;
+        final List<CompletionHandler<Object>> first;
+        final long loadGeneration;
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos > scheduler.elapsedRealtimeNanos()) {
+                entry.usedSinceLoad = true;
+                hit = entry;
+                first = null;
+                loadGeneration = generation;
+            } else {
+                final List<CompletionHandler<Object>> waiting = inFlight.get(key);
+                if (waiting != null) {
+                    waiting.add(completion);
+                    return;
+                }
+                first = new ArrayList<>();
+                first.add(completion);
+                inFlight.put(key, first);
+                loadGeneration = generation;
+                hit = null;
+            }
+        }
+
+        if (first == null) {
+            completion.onSuccess(hit.value);
+        } else {
+            load(key, loader, refresher, first, loadGeneration);
+        }
+    }
+
+    /**
+     * Forgets all tokens and stops their refreshes. Host calls that are in flight still answer the
+     * requests that are waiting on them, but their token is not cached and later requests start a
+     * new host call.
+     */
+    synchronized void invalidate() {
+        generation++;
+        for (Entry entry : entries.values()) {
+            if (entry.refresh != null) {
+                scheduler.cancelOnUiThread(entry.refresh);
+            }
+        }
+        entries.clear();
+        inFlight.clear();
+    }
+
+    private void load(@NonNull String key, @NonNull Loader loader, @NonNull Loader refresher,
+                      @NonNull List<CompletionHandler<Object>> waiting, long loadGeneration) {
+        loader.load(new CompletionHandler<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object data) {
+                final long ttlInMs = ttlOf(data);
+                final List<CompletionHandler<Object>> answered;
+                synchronized (AccessTokenCache.this) {
+                    // A token loaded before an invalidate, e.g. before a logout, must not come back
+                    if (loadGeneration == generation) {
+                        final Entry previous = entries.remove(key);
+                        if (previous != null && previous.refresh != null) {
+                            scheduler.cancelOnUiThread(previous.refresh);
+                        }
+                        if (ttlInMs > 0) {
+                            final Entry entry = new Entry(data, scheduler.elapsedRealtimeNanos() + ttlInMs * 1_000_000);
+                            entries.put(key, entry);
+                            scheduleRefresh(key, entry, ttlInMs, refresher);
+                        }
+                        inFlight.remove(key);
+                    }
+                    // Nobody joins anymore once the load left inFlight, at the latest with the invalidate
+                    answered = new ArrayList<>(waiting);
+                }
+
+                for (CompletionHandler<Object> completion : answered) {
+                    completion.onSuccess(data);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                final List<CompletionHandler<Object>> answered;
+                synchronized (AccessTokenCache.this) {
+                    // Failed or timed out, the next request starts a new host call
+                    if (inFlight.get(key) == waiting) {
+                        inFlight.remove(key);
+                    }
+                    answered = new ArrayList<>(waiting);
+                }
+
+                for (CompletionHandler<Object> completion : answered) {
+                    completion.onFailure(e);
+                }
+            }
+        });
+    }
+
+    /// Only called while holding the lock
+    private void scheduleRefresh(@NonNull String key, @NonNull Entry entry, long ttlInMs, @NonNull Loader refresher) {
+        final long delayInMs = ttlInMs - settings.refreshBeforeExpiryInMs;
+        if (settings.refreshBeforeExpiryInMs <= 0 || delayInMs <= 0) {
+            return;
+        }
+
+        entry.refresh = () -> {
+            final List<CompletionHandler<Object>> waiting = new ArrayList<>();
+            final long loadGeneration;
+            synchronized (AccessTokenCache.this) {
+                // Tokens nobody asked for since they were loaded are left to expire
+                if (entries.get(key) != entry || !entry.usedSinceLoad || inFlight.containsKey(key)) {
+                    return;
+                }
+                inFlight.put(key, waiting);
+                loadGeneration = generation;
+            }
+            Log.d(TAG, "Refreshing access token " + key);
+            if (refreshExecutor != null) {
+                refreshExecutor.execute(() -> load(key, refresher, refresher, waiting, loadGeneration));
+            } else {
+                load(key, refresher, refresher, waiting, loadGeneration);
+            }
+        };
+        scheduler.runOnUiThread(entry.refresh, delayInMs);
+    }
+
+    /**
+     * @return how long the token in the response is valid, taken from the response when it is a map
+     * with expiresIn (seconds) or expiresAt (epoch milliseconds)
+     */
+    private long ttlOf(@Nullable Object response) {
+        if (response instanceof Map) {
+            final Object expiresIn = ((Map<?, ?>) response).get(EXPIRES_IN_SECONDS);
+            if (expiresIn instanceof Number) {
+                return ((Number) expiresIn).longValue() * 1000;
+            }
+            final Object expiresAt = ((Map<?, ?>) response).get(EXPIRES_AT_EPOCH_MILLIS);
+            if (expiresAt instanceof Number) {
+                return ((Number) expiresAt).longValue() - System.currentTimeMillis();
+            }
+        }
+        return settings.defaultTtlInMs;
+    }
+
+    /**
+     * @return the key of a request, requests with the same handover and the same data share a token
+     */
+    @NonNull
+    static String keyOf(@NonNull String handover, @Nullable Map<String, Object> data) {
+        final StringBuilder key = new StringBuilder(handover);
+        if (data != null) {
+            // Sorted, so equal maps give the same key whatever their iteration order
+            for (Map.Entry<String, Object> entry : new TreeMap<>(data).entrySet()) {
+                key.append('|').append(entry.getKey()).append('=').append(valueKeyOf(entry.getValue()));
+            }
+        }
+        return key.toString();
+    }
+
+    @NonNull
+    static String keyOf(@NonNull String handover, @NonNull byte[] request) {
+        return handover + "|" + Base64.encodeToString(request, Base64.NO_WRAP);
+    }
+
+    @NonNull
+    private static String valueKeyOf(@Nullable Object value) {
+        return value instanceof byte[] ? Base64.encodeToString((byte[]) value, Base64.NO_WRAP) : String.valueOf(value);
+    }
+}
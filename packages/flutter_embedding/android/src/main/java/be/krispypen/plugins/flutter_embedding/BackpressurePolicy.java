@@ -0,0 +1,14 @@
+package be.krispypen.plugins.flutter_embedding;
+
+/**
+ * What happens to a handover from Flutter when the host already has the maximum number of them in
+ * flight. Flutter gets a HANDOVER_BACKPRESSURE error for every handover that is not passed on.
+ */
+public enum BackpressurePolicy {
+    /// The new handover fails right away
+    REJECT,
+    /// The new handover waits until one in flight is answered, it fails when the queue is full
+    QUEUE,
+    /// Like QUEUE, but the oldest waiting handover fails to make room for the new one
+    DROP_OLDEST,
+}
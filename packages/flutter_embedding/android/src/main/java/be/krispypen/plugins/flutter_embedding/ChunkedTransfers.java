@@ -0,0 +1,190 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves large byte[] values of a handover in chunks, so no single message encodes megabytes on the
+ * main thread. Only byte[] values at the top level of the handover data are chunked, large maps
+ * and lists still go in one message.
+ * <p>
+ * The chunks of every large value are sent first with {@link #METHOD_CHUNK}, one at a time. The
+ * handover itself follows with a marker map in place of each value, and the other side swaps the
+ * markers for the reassembled bytes.
+ * <p>
+ * IMPORTANT: keep this in sync with the Dart version in lib/flutter_embedding.dart
+ */
+class ChunkedTransfers {
+    static final String METHOD_CHUNK = "internalChunk";
+    private static final String MARKER = "internalChunkedTransfer";
+    private static final String KEY_ID = "id";
+    private static final String KEY_DATA = "data";
+
+    /**
+     * A handover with its large values replaced by markers, and the chunks still to send for them.
+     * Only used on the UI thread.
+     */
+    static final class Outgoing {
+        @NonNull
+        final Map<String, Object> message;
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private final int chunkSize;
+        private int valueIndex = 0;
+        private int offset = 0;
+
+        private Outgoing(@NonNull Map<String, Object> message, int chunkSize) {
+            this.message = message;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @return the arguments of the next chunk message, or null when all chunks were sent
+         */
+        @Nullable
+        Map<String, Object> nextChunk() {
+            if (valueIndex >= values.size()) {
+                return null;
+            }
+
+            final byte[] value = values.get(valueIndex);
+            final int end = Math.min(offset + chunkSize, value.length);
+            final Map<String, Object> chunk = new HashMap<>();
+            chunk.put(KEY_ID, ids.get(valueIndex));
+            chunk.put(KEY_DATA, Arrays.copyOfRange(value, offset, end));
+
+            offset = end;
+            if (offset >= value.length) {
+                valueIndex++;
+                offset = 0;
+            }
+            return chunk;
+        }
+    }
+
+    /// How long a value may wait for its next chunk or its handover before it is dropped
+    static final long STALE_TRANSFER_TIMEOUT_NANOS = 60_000_000_000L;
+
+    private static final class Incoming {
+        final ByteArrayOutputStream value = new ByteArrayOutputStream();
+        long lastChunkNanos;
+    }
+
+    /// Values of which not all chunks arrived yet, by transfer id
+    private final Map<Integer, Incoming> incoming = new HashMap<>();
+    @NonNull
+    private final Scheduler scheduler;
+
+    ChunkedTransfers() {
+        this(Scheduler.SYSTEM);
+    }
+
+    ChunkedTransfers(@NonNull Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the handover to send in chunks, or null when none of its values is larger than a chunk
+     */
+    @Nullable
+    static Outgoing split(@NonNull Map<String, Object> data, int chunkSize, @NonNull AtomicInteger nextTransferId) {
+        Outgoing outgoing = null;
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (!(entry.getValue() instanceof byte[]) || ((byte[]) entry.getValue()).length <= chunkSize) {
+                continue;
+            }
+            if (outgoing == null) {
+                outgoing = new Outgoing(new HashMap<>(data), chunkSize);
+            }
+
+            final int id = nextTransferId.incrementAndGet();
+            final Map<String, Object> marker = new HashMap<>();
+            marker.put(MARKER, id);
+            outgoing.message.put(entry.getKey(), marker);
+            outgoing.ids.add(id);
+            outgoing.values.add((byte[]) entry.getValue());
+        }
+        return outgoing;
+    }
+
+    /**
+     * Adds a chunk that arrived with {@link #METHOD_CHUNK}.
+     */
+    synchronized void append(@Nullable Map<String, Object> chunk) {
+        if (chunk == null || !(chunk.get(KEY_ID) instanceof Number) || !(chunk.get(KEY_DATA) instanceof byte[])) {
+            return;
+        }
+
+        final long now = scheduler.elapsedRealtimeNanos();
+        expireStale(now);
+
+        final int id = ((Number) chunk.get(KEY_ID)).intValue();
+        Incoming transfer = incoming.get(id);
+        if (transfer == null) {
+            transfer = new Incoming();
+            incoming.put(id, transfer);
+        }
+        transfer.lastChunkNanos = now;
+        final byte[] data = (byte[]) chunk.get(KEY_DATA);
+        transfer.value.write(data, 0, data.length);
+    }
+
+    /**
+     * Drops the values whose handover never arrived, for example because the Dart side gave up
+     * halfway or the screen went away.
+     */
+    private void expireStale(long now) {
+        final Iterator<Incoming> iterator = incoming.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastChunkNanos > STALE_TRANSFER_TIMEOUT_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the handover with its markers replaced by the reassembled values
+     * @throws IllegalStateException when the chunks of a value are missing, for example because
+     *                               they expired, the marker must never reach a handler as data
+     */
+    @Nullable
+    synchronized Map<String, Object> resolve(@Nullable Map<String, Object> params) {
+        if (params == null) {
+            return null;
+        }
+        expireStale(scheduler.elapsedRealtimeNanos());
+
+        Map<String, Object> resolved = params;
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (!(entry.getValue() instanceof Map) || !(((Map<?, ?>) entry.getValue()).get(MARKER) instanceof Number)) {
+                continue;
+            }
+            final int id = ((Number) ((Map<?, ?>) entry.getValue()).get(MARKER)).intValue();
+            final Incoming transfer = incoming.remove(id);
+            if (transfer == null) {
+                throw new IllegalStateException("Chunked transfer " + id + " of " + entry.getKey() + " is missing or expired");
+            }
+            if (resolved == params) {
+                resolved = new HashMap<>(params);
+            }
+            resolved.put(entry.getKey(), transfer.value.toByteArray());
+        }
+        return resolved;
+    }
+
+    /**
+     * Drops every value that is still incomplete, for when the channel goes away.
+     */
+    synchronized void clear() {
+        incoming.clear();
+    }
+}
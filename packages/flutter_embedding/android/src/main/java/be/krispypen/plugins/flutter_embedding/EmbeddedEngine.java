@@ -0,0 +1,108 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * State of one engine in the {@link FlutterEmbedding} pool.
+ * <p>
+ * Every engine gets its own handover responder and its own MethodChannel, because each spawned
+ * engine runs its own isolate and attaches its own instance of the {@link FlutterEmbeddingPlugin}.
+ */
+class EmbeddedEngine {
+
+    enum State {
+        STOPPED,
+        STARTING,
+        RUNNING,
+    }
+
+    @NonNull
+    final String id;
+
+    /// Only changed while holding the lock on the engines of FlutterEmbedding
+    @NonNull
+    State state = State.STOPPED;
+
+    /// The completions of every startEngine call that arrived while the engine was starting
+    final List<CompletionHandler<Boolean>> pendingStartCompletions = new ArrayList<>();
+
+    @Nullable
+    FlutterEngine flutterEngine;
+
+    @Nullable
+    HandoverResponderInterface handoverResponder;
+
+    @Nullable
+    MethodChannel channel;
+
+    /// Carries the handovers of the bulk lane, null unless priority lanes are enabled
+    @Nullable
+    MethodChannel bulkChannel;
+
+    /// Carries gRPC payloads without wrapping them in a map, see {@link GrpcFrame}
+    @Nullable
+    BasicMessageChannel<ByteBuffer> grpcChannel;
+
+    /// The thread the channels of the engine hand handovers from Flutter to
+    @NonNull
+    HandoverThreadMode handoverThreadMode = HandoverThreadMode.MAIN;
+
+    /// The access tokens of this engine, only changed while holding the lock on the engines of
+    /// FlutterEmbedding
+    @Nullable
+    AccessTokenCache accessTokenCache;
+
+    /// True once the Dart side handles the channel, handovers sent before that can get lost
+    volatile boolean channelReady;
+
+    /// True when the Dart side said with the channel ready message that it handles binary gRPC frames
+    volatile boolean grpcFramesReady;
+
+    /// What the engine was started with, so it can be restarted lazily after it was evicted
+    @Nullable
+    Context applicationContext;
+    @Nullable
+    List<String> entrypointArgs;
+    @Nullable
+    String libraryURI;
+
+    /// The route the next start of the engine opens, only touched on the UI thread
+    @Nullable
+    String initialRoute;
+
+    /// The number of fragments and activities currently attached to this engine, only touched on
+    /// the UI thread
+    int surfaceCount;
+
+    /// Screens started with startScreen whose activity isn't created yet, they already count as a
+    /// surface so the engine isn't evicted while the activity starts, only touched on the UI thread
+    int launchingScreens;
+
+    /// True when the engine was destroyed to free memory and should be restarted on next use
+    boolean evicted;
+
+    @Nullable
+    Runnable idleEviction;
+
+    /// Large values Flutter is sending in chunks
+    final ChunkedTransfers chunkedTransfers = new ChunkedTransfers();
+
+    /// The phases of the last boot of this engine
+    @Nullable
+    StartupMetrics startupMetrics;
+
+    EmbeddedEngine(@NonNull String id) {
+        this.id = id;
+    }
+}
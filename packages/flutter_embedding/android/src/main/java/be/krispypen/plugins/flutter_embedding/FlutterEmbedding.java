@@ -1,6 +1,14 @@
 package be.krispypen.plugins.flutter_embedding;
 
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Base64;
 import android.view.View;
 import android.widget.FrameLayout;
 
@@ -9,10 +17,21 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.FragmentActivity;
 import androidx.fragment.app.FragmentManager;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.FlutterInjector;
 import android.util.Log;
@@ -20,11 +39,17 @@ import io.flutter.embedding.android.FlutterActivity;
 import io.flutter.embedding.android.FlutterFragment;
 import io.flutter.embedding.engine.FlutterEngine;
 import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.FlutterEngineGroup;
 import io.flutter.embedding.engine.dart.DartExecutor;
 import io.flutter.embedding.engine.loader.FlutterLoader;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.embedding.engine.renderer.FlutterUiDisplayListener;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
 
@@ -42,189 +67,1492 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
     public static final String[] ALLOWED_ENVIRONMENTS = {"DEV", "TST", "UAT", "PILOT", "PROD", "DEMO", "MOCK"};
     // End allowed environments
 
+    /**
+     * The id of the engine used by all methods that don't take an engine id.
+     */
+    public static final String DEFAULT_ENGINE_ID = "flutter_embedding_engine";
+    /// The ids of engines that attach the plugin without being started by FlutterEmbedding start with this
+    private static final String EXTERNAL_ENGINE_ID_PREFIX = "flutter_embedding_external_";
+
     private static final String CHANNEL_NAME = "flutter_embedding/embedding";
+    private static final String BULK_CHANNEL_NAME = "flutter_embedding/embedding_bulk";
+    private static final String GRPC_CHANNEL_NAME = "flutter_embedding/grpc";
+    /// The start config passed next to a binary start config, the Dart side reads the binary one from the second entrypoint argument
+    private static final String EMPTY_START_CONFIG = "{}";
     private static final String TAG_FLUTTER_FRAGMENT = "flutter_embedding_fragment";
-    private static final String ENGINE_ID = "flutter_embedding_engine";
     private static final String TAG = "FlutterEmbedding";
+    /// The methods of the embedding channel that are no handovers start with this
+    private static final String INTERNAL_METHOD_PREFIX = "internal";
+    /// Sent by the Dart side once it handles the embedding channel
+    private static final String METHOD_CHANNEL_READY = "internalChannelReady";
+    /// The capability in the channel ready message of a Dart side that handles binary gRPC frames
+    private static final String CAPABILITY_GRPC_FRAMES = "grpcFrames";
+    /// Fire-and-forget handovers grouped by the Dart side, a map of handover name to a list of data
+    private static final String METHOD_HANDOVER_BATCH = "internalHandoverBatch";
+    private static final String METHOD_REQUEST_LAYOUT = "internalRequestLayout";
+    /// The error code Flutter gets when the host didn't answer a handover before its deadline
+    private static final String ERROR_TIMEOUT = "HANDOVER_TIMEOUT";
+    /// The error code Flutter gets when the host has too many handovers in flight to take this one
+    private static final String ERROR_BACKPRESSURE = "HANDOVER_BACKPRESSURE";
+    /// The error code Flutter gets when the chunks of a large value of a handover didn't all arrive
+    private static final String ERROR_CHUNKED_TRANSFER = "HANDOVER_INCOMPLETE_TRANSFER";
+
+    /// The completion of handovers that nobody waits for
+    private static final CompletionHandler<Object> IGNORED_COMPLETION = new CompletionHandler<Object>() {
+        @Override
+        public void onSuccess(@Nullable Object data) {
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            Log.e(TAG, "Fire-and-forget handover failed " + e.getMessage());
+        }
+    };
+
+    private static class LazyHolder {
+        static final FlutterEmbedding INSTANCE = new FlutterEmbedding();
+    }
+
+    /// All engines spawned by this FlutterEmbedding, keyed by engine id
+    ///
+    /// Each entry also keeps the MethodChannel that will the communication between Flutter and
+    /// native Android for that engine. This reference serves to register the plugin with the Flutter
+    /// Engine and unregister it when the Flutter Engine is detached from the Activity
+    private final Map<String, EmbeddedEngine> engines = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextGrpcCallId = new AtomicInteger();
+    private final AtomicInteger nextTransferId = new AtomicInteger();
+    /// Numbers the engines that attach the plugin without being spawned by this FlutterEmbedding
+    private final AtomicInteger nextExternalEngineId = new AtomicInteger();
+
+    /// Engines are spawned from one group so they share the isolate snapshot, assets and fonts
+    private FlutterEngineGroup engineGroup;
+
+    /// The id of the engine that is being constructed on the UI thread, plugins attach during
+    /// construction so this is how createChannel knows which engine it belongs to
+    @Nullable
+    private String attachingEngineId;
+
+    /// How long an engine without attached fragments or screens is kept alive, a negative value keeps it forever
+    private long idleEngineTimeout = -1;
+
+    /// Destroy engines without attached fragments or screens when the system asks to trim memory
+    private boolean evictUnusedEnginesOnTrimMemory = false;
+
+    private boolean memoryCallbacksRegistered = false;
+
+    /// The FlutterActivities on one of our engines, they count as a surface of that engine until they
+    /// are destroyed. Only touched on the UI thread
+    private final Map<Activity, EmbeddedEngine> screens = new HashMap<>();
+    private boolean screenCallbacksRegistered = false;
+
+    @Nullable
+    private StartupMetricsListener startupMetricsListener;
+
+    /// Only used for channels created after it was set, so it should be set before starting engines
+    @NonNull
+    private HandoverThreadMode handoverThreadMode = HandoverThreadMode.MAIN;
+
+    /// Handlers per handover, replaced as a whole when a handler is registered so dispatch never locks
+    @NonNull
+    private volatile EnumMap<Handover, HandoverHandler> handoverHandlers = new EnumMap<>(Handover.class);
+    private final Map<String, HandoverHandler> customHandoverHandlers = new ConcurrentHashMap<>();
+    /// Fail handovers without a registered handler instead of passing them to the responder
+    private boolean strictHandoverDispatch = false;
+
+    /// Every handover in flight in both directions, so none of them waits forever
+    private final PendingHandoverTable pendingHandovers = new PendingHandoverTable();
+    private long defaultHandoverTimeout = 0;
+
+    /// Limits the handovers from Flutter that wait on the host at the same time
+    private final HandoverLimiter handoverLimiter = new HandoverLimiter();
+
+    /// Answers access token handovers without a host round trip while the token is valid, every
+    /// engine gets its own cache with these settings
+    @Nullable
+    private volatile AccessTokenCache.Settings accessTokenCacheSettings;
+    /// Refreshes the access tokens of engines that don't handle handovers on the main thread
+    private final Executor tokenRefreshExecutor = Executors.newSingleThreadExecutor();
+
+    /// byte[] values larger than this are sent to Flutter in chunks of this size, 0 disables it
+    private int chunkSize = 0;
+
+    /// Gives bulk handovers their own channel and serial background queue, see {@link HandoverLane}
+    private boolean priorityLanesEnabled = false;
+
+    /// Outboxes are kept per engine id and outlive the engine, so handovers survive a restart
+    private final Map<String, HandoverOutbox> outboxes = new ConcurrentHashMap<>();
+    private int outboxCapacity = 0;
+    @NonNull
+    private OutboxDropPolicy outboxDropPolicy = OutboxDropPolicy.REJECT_NEW;
+    private long outboxTtl = 0;
+
+    @NonNull
+    private SnapshotMode snapshotMode = SnapshotMode.OFF;
+    private final LastFrameSnapshots lastFrameSnapshots = new LastFrameSnapshots();
+
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            FlutterEmbedding.this.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            FlutterEmbedding.this.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+    };
+
+    private final Application.ActivityLifecycleCallbacks screenCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+            onScreenCreated(activity);
+        }
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+            onScreenDestroyed(activity);
+        }
+    };
+
+    private FlutterEmbedding() {
+    }
+
+    public static FlutterEmbedding instance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    MethodChannel createChannel(@NonNull FlutterPlugin.FlutterPluginBinding flutterPluginBinding) {
+        final String engineId;
+        if (attachingEngineId != null) {
+            engineId = attachingEngineId;
+        } else {
+            // Engines that are not created by FlutterEmbedding (e.g. a FlutterActivity with its own engine) get an id of
+            // their own, so they never take over the channel of an engine that was started with startEngine
+            engineId = EXTERNAL_ENGINE_ID_PREFIX + nextExternalEngineId.incrementAndGet();
+            Log.d(TAG, "Attached to an engine that FlutterEmbedding didn't start, it gets the id " + engineId);
+        }
+        final EmbeddedEngine embeddedEngine = getOrCreateEmbeddedEngine(engineId);
+
+        if (embeddedEngine.channel != null) {
+            Log.e(TAG, "Engine " + engineId + " already has a channel, detaching it");
+            detachChannel(embeddedEngine.channel);
+        }
+        final HandoverThreadMode threadMode = handoverThreadMode;
+        embeddedEngine.handoverThreadMode = threadMode;
+        final BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+        if (threadMode == HandoverThreadMode.MAIN) {
+            embeddedEngine.channel = new MethodChannel(messenger, FlutterEmbedding.CHANNEL_NAME);
+            embeddedEngine.grpcChannel = new BasicMessageChannel<>(messenger, GRPC_CHANNEL_NAME, BinaryCodec.INSTANCE_DIRECT);
+        } else {
+            final BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue(
+                    new BinaryMessenger.TaskQueueOptions().setIsSerial(threadMode == HandoverThreadMode.BACKGROUND_SERIAL));
+            embeddedEngine.channel = new MethodChannel(messenger, FlutterEmbedding.CHANNEL_NAME, StandardMethodCodec.INSTANCE, taskQueue);
+            embeddedEngine.grpcChannel = new BasicMessageChannel<>(messenger, GRPC_CHANNEL_NAME, BinaryCodec.INSTANCE_DIRECT, taskQueue);
+        }
+        embeddedEngine.channel.setMethodCallHandler((call, result) -> onMethodCall(embeddedEngine, call, result));
+        if (priorityLanesEnabled) {
+            // Without a handler on this channel the Dart side sends bulk handovers on the main channel
+            final BinaryMessenger.TaskQueue bulkTaskQueue = messenger.makeBackgroundTaskQueue(
+                    new BinaryMessenger.TaskQueueOptions().setIsSerial(true));
+            embeddedEngine.bulkChannel = new MethodChannel(messenger, BULK_CHANNEL_NAME, StandardMethodCodec.INSTANCE, bulkTaskQueue);
+            embeddedEngine.bulkChannel.setMethodCallHandler((call, result) -> onMethodCall(embeddedEngine, call, result));
+        }
+        embeddedEngine.grpcChannel.setMessageHandler((message, reply) -> onGrpcMessage(embeddedEngine, message, reply));
+
+        if (embeddedEngine.handoverResponder != null) {
+            embeddedEngine.handoverResponder.onHandoverThreadMode(threadMode);
+        }
+
+        return embeddedEngine.channel;
+    }
+
+    void detachChannel(@NonNull MethodChannel channel) {
+        channel.setMethodCallHandler(null);
+
+        for (EmbeddedEngine embeddedEngine : engines.values()) {
+            if (embeddedEngine.channel == channel) {
+                embeddedEngine.channel = null;
+                if (embeddedEngine.bulkChannel != null) {
+                    embeddedEngine.bulkChannel.setMethodCallHandler(null);
+                    embeddedEngine.bulkChannel = null;
+                }
+                if (embeddedEngine.grpcChannel != null) {
+                    embeddedEngine.grpcChannel.setMessageHandler(null);
+                    embeddedEngine.grpcChannel = null;
+                }
+                embeddedEngine.channelReady = false;
+                embeddedEngine.grpcFramesReady = false;
+                embeddedEngine.chunkedTransfers.clear();
+
+                final HandoverOutbox outbox = outboxes.get(embeddedEngine.id);
+                if (outbox != null) {
+                    outbox.close();
+                }
+
+                if (embeddedEngine.id.startsWith(EXTERNAL_ENGINE_ID_PREFIX)) {
+                    // Nothing can attach to the same engine again, its id is gone with it
+                    engines.remove(embeddedEngine.id);
+                    outboxes.remove(embeddedEngine.id);
+                    releaseEngineState(embeddedEngine, new Exception("Engine " + embeddedEngine.id + " was detached."));
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues handovers to Flutter while the engine isn't running or the Dart side isn't listening
+     * yet, instead of failing them with "No Flutter engine running.". They are sent in order as soon
+     * as the Dart side of the embedding channel is ready.
+     *
+     * @param capacity   the maximum number of queued handovers per engine, 0 disables the outbox (default)
+     * @param dropPolicy what to do with a new handover when the outbox is full
+     * @param ttlInMs    how long a handover may stay queued before it fails, 0 keeps it until it is sent
+     */
+    public void setHandoverOutbox(int capacity, @NonNull OutboxDropPolicy dropPolicy, long ttlInMs) {
+        this.outboxCapacity = capacity;
+        this.outboxDropPolicy = dropPolicy;
+        this.outboxTtl = ttlInMs;
+
+        for (HandoverOutbox outbox : outboxes.values()) {
+            outbox.configure(capacity, dropPolicy, ttlInMs);
+            if (capacity <= 0) {
+                outbox.clear();
+            }
+        }
+    }
+
+    @NonNull
+    private HandoverOutbox getOrCreateOutbox(@NonNull String engineId) {
+        synchronized (outboxes) {
+            HandoverOutbox outbox = outboxes.get(engineId);
+            if (outbox == null) {
+                outbox = new HandoverOutbox((eventName, data, completion) -> deliverHandover(engineId, eventName, data, completion),
+                        outboxCapacity, outboxDropPolicy, outboxTtl);
+                outboxes.put(engineId, outbox);
+
+                final EmbeddedEngine embeddedEngine = engines.get(engineId);
+                if (embeddedEngine != null && embeddedEngine.channelReady) {
+                    outbox.open();
+                }
+            }
+            return outbox;
+        }
+    }
+
+    private void flushOutbox(@NonNull String engineId) {
+        // The completions are already tracked as pending
+        final int flushed = getOrCreateOutbox(engineId).open();
+        if (flushed > 0) {
+            Log.d(TAG, "Flushing " + flushed + " queued handovers to engine " + engineId);
+        }
+    }
+
+    @NonNull
+    private EmbeddedEngine getOrCreateEmbeddedEngine(@NonNull String engineId) {
+        synchronized (engines) {
+            EmbeddedEngine embeddedEngine = engines.get(engineId);
+            if (embeddedEngine == null) {
+                embeddedEngine = new EmbeddedEngine(engineId);
+                engines.put(engineId, embeddedEngine);
+            }
+            return embeddedEngine;
+        }
+    }
+
+    private FlutterEngineGroup getOrCreateEngineGroup(@NonNull Context context) {
+        if (engineGroup == null) {
+            engineGroup = new FlutterEngineGroup(context.getApplicationContext());
+        }
+        return engineGroup;
+    }
+
+    /**
+     * Destroys engines that have no attached fragments or screens for the given time, they are
+     * restarted with the same start config and handover responder as soon as a fragment or screen
+     * needs them again.
+     *
+     * @param timeoutInMs the idle time after which an engine is destroyed, a negative value disables this (default)
+     */
+    public void setIdleEngineTimeout(long timeoutInMs) {
+        this.idleEngineTimeout = timeoutInMs;
+    }
+
+    /**
+     * Destroys engines that have no attached fragments or screens when the app is in the background
+     * and the system asks to trim memory, they are restarted as soon as a fragment or screen needs
+     * them again.
+     * Low memory warnings are always forwarded to the engines.
+     */
+    public void setEvictUnusedEnginesOnTrimMemory(boolean evictUnusedEnginesOnTrimMemory) {
+        this.evictUnusedEnginesOnTrimMemory = evictUnusedEnginesOnTrimMemory;
+    }
+
+    /**
+     * Captures the last frame of an engine when its fragment stops, the fragment shows it as
+     * placeholder when it comes back until Flutter painted its first new frame.
+     */
+    public void setSnapshotMode(@NonNull SnapshotMode snapshotMode) {
+        this.snapshotMode = snapshotMode;
+    }
+
+    /**
+     * Sets the thread on which handovers coming from Flutter are handled, see
+     * {@link HandoverThreadMode}. Handovers that do crypto or disk I/O should not run on the main
+     * thread. Only applies to engines started after calling this.
+     */
+    public void setHandoverThreadMode(@NonNull HandoverThreadMode handoverThreadMode) {
+        this.handoverThreadMode = handoverThreadMode;
+    }
+
+    /**
+     * Registers the handler for a handover from Flutter, it is used instead of the
+     * {@link HandoverResponderInterface} of the engine. A null handler removes the registration.
+     */
+    public void registerHandoverHandler(@NonNull Handover handover, @Nullable HandoverHandler handler) {
+        synchronized (customHandoverHandlers) {
+            final EnumMap<Handover, HandoverHandler> handlers = new EnumMap<>(handoverHandlers);
+            if (handler != null) {
+                handlers.put(handover, handler);
+            } else {
+                handlers.remove(handover);
+            }
+            handoverHandlers = handlers;
+        }
+    }
+
+    /**
+     * Registers the handler for a handover that is not in {@link Handover}.
+     */
+    public void registerHandoverHandler(@NonNull String name, @Nullable HandoverHandler handler) {
+        final Handover handover = Handover.fromEventName(name);
+        if (handover != null) {
+            registerHandoverHandler(handover, handler);
+        } else if (handler != null) {
+            customHandoverHandlers.put(name, handler);
+        } else {
+            customHandoverHandlers.remove(name);
+        }
+    }
+
+    /**
+     * Fails handovers without a registered {@link HandoverHandler} right away with notImplemented,
+     * instead of passing them to the {@link HandoverResponderInterface}.
+     */
+    public void setStrictHandoverDispatch(boolean strictHandoverDispatch) {
+        this.strictHandoverDispatch = strictHandoverDispatch;
+    }
+
+    /**
+     * Sets the deadline of handovers in both directions that are invoked without one, an expired
+     * handover fails with a {@link java.util.concurrent.TimeoutException}. For handovers from
+     * Flutter the deadline includes the time they wait for room under the in-flight limits.
+     *
+     * @param timeoutInMs the deadline, 0 waits forever (default)
+     */
+    public void setDefaultHandoverTimeout(long timeoutInMs) {
+        this.defaultHandoverTimeout = timeoutInMs;
+    }
+
+    /**
+     * @return the handovers that are waiting for an answer, in no particular order
+     */
+    @NonNull
+    public List<PendingHandover> getPendingHandovers() {
+        return pendingHandovers.snapshot();
+    }
+
+    public int getInFlightHandoverCount() {
+        return pendingHandovers.inFlightCount();
+    }
+
+    /**
+     * @return how many handovers failed because they were not answered before their deadline
+     */
+    public long getExpiredHandoverCount() {
+        return pendingHandovers.expiredCount();
+    }
+
+    public long getCancelledHandoverCount() {
+        return pendingHandovers.cancelledCount();
+    }
+
+    /**
+     * @return the call counts, error counts, in-flight gauges and latency histograms of every
+     * handover name and direction seen since the start or the last {@link #resetHandoverMetrics()}
+     */
+    @NonNull
+    public List<HandoverMetricsSnapshot> getHandoverMetrics() {
+        return pendingHandovers.metrics().snapshot();
+    }
+
+    /**
+     * Starts counting from zero, for example after the metrics were exported.
+     */
+    public void resetHandoverMetrics() {
+        pendingHandovers.metrics().reset();
+    }
+
+    /**
+     * Limits how many handovers from Flutter may wait on the host at the same time, over all
+     * engines. Flutter gets a HANDOVER_BACKPRESSURE error for a handover that is not passed on.
+     *
+     * @param limit     the maximum number of handovers in flight, 0 is no limit (default)
+     * @param policy    what to do with a handover when the limit is reached
+     * @param maxQueued how many handovers may wait for room with the QUEUE and DROP_OLDEST policies
+     */
+    public void setHandoverInFlightLimit(int limit, @NonNull BackpressurePolicy policy, int maxQueued) {
+        handoverLimiter.configure(limit, policy, maxQueued);
+    }
+
+    /**
+     * Limits how many handovers with this name from Flutter may wait on the host at the same time,
+     * on top of the global limit, see {@link #setHandoverInFlightLimit(int, BackpressurePolicy, int)}.
+     *
+     * @param limit the maximum number of these handovers in flight, 0 is no limit (default)
+     */
+    public void setHandoverInFlightLimit(@NonNull Handover handover, int limit) {
+        setHandoverInFlightLimit(handover.getEventName(), limit);
+    }
+
+    public void setHandoverInFlightLimit(@NonNull String handoverName, int limit) {
+        handoverLimiter.setLimit(handoverName, limit);
+    }
+
+    /**
+     * @return how many handovers from Flutter wait for room because of the in-flight limits
+     */
+    public int getQueuedHandoverCount() {
+        return handoverLimiter.queuedCount();
+    }
+
+    /**
+     * @return how many handovers from Flutter failed with HANDOVER_BACKPRESSURE
+     */
+    public long getRejectedHandoverCount() {
+        return handoverLimiter.rejectedCount();
+    }
+
+    /**
+     * Caches the answers of the host to access token handovers, so Flutter only reaches the host
+     * when the token it asks for is not cached. Concurrent requests for the same token share one
+     * host call. Errors are never cached.
+     * <p>
+     * The lifetime of a token is taken from the response when it is a map with expiresIn (seconds)
+     * or expiresAt (epoch milliseconds), other responses are cached for the default TTL.
+     *
+     * @param defaultTtlInMs          how long responses without a lifetime are cached, 0 doesn't cache them
+     * @param refreshBeforeExpiryInMs tokens that were used are refreshed this long before they expire, 0 disables it
+     * @param handovers               the handover or gRPC method names that provide tokens, only
+     *                                these are cached, e.g. {@link Handover#provideAccessToken}
+     */
+    public void enableAccessTokenCache(long defaultTtlInMs, long refreshBeforeExpiryInMs, @NonNull Set<String> handovers) {
+        disableAccessTokenCache();
+        accessTokenCacheSettings = new AccessTokenCache.Settings(handovers, defaultTtlInMs, refreshBeforeExpiryInMs);
+    }
+
+    public void disableAccessTokenCache() {
+        accessTokenCacheSettings = null;
+        synchronized (engines) {
+            for (EmbeddedEngine embeddedEngine : engines.values()) {
+                if (embeddedEngine.accessTokenCache != null) {
+                    embeddedEngine.accessTokenCache.invalidate();
+                    embeddedEngine.accessTokenCache = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets all cached access tokens of all engines, e.g. when the user logs out. Tokens that are
+     * being loaded right now are not cached anymore either.
+     */
+    public void invalidateAccessTokens() {
+        synchronized (engines) {
+            for (EmbeddedEngine embeddedEngine : engines.values()) {
+                if (embeddedEngine.accessTokenCache != null) {
+                    embeddedEngine.accessTokenCache.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the access token cache of the engine, or null when the cache is disabled
+     */
+    @Nullable
+    private AccessTokenCache getAccessTokenCache(@NonNull EmbeddedEngine embeddedEngine) {
+        final AccessTokenCache.Settings settings = accessTokenCacheSettings;
+        if (settings == null) {
+            return null;
+        }
+
+        synchronized (engines) {
+            AccessTokenCache tokenCache = embeddedEngine.accessTokenCache;
+            if (tokenCache == null || tokenCache.settings != settings) {
+                if (tokenCache != null) {
+                    tokenCache.invalidate();
+                }
+                // Refreshes call the host on the same kind of thread as the handovers of the engine
+                tokenCache = new AccessTokenCache(settings, embeddedEngine.handoverThreadMode == HandoverThreadMode.MAIN ? null : tokenRefreshExecutor);
+                embeddedEngine.accessTokenCache = tokenCache;
+            }
+            return tokenCache;
+        }
+    }
+
+    /**
+     * Sends byte[] values of handovers to Flutter in chunks when they are larger than the chunk
+     * size, so a multi-MB document never blocks the UI thread while it is encoded. The next chunk is
+     * only sent once Flutter received the previous one.
+     *
+     * @param chunkSizeInBytes the size of one chunk, 0 sends every value in one piece (default)
+     */
+    public void setChunkSize(int chunkSizeInBytes) {
+        this.chunkSize = chunkSizeInBytes;
+    }
+
+    /**
+     * Handles bulk handovers from Flutter, like analytics events and debug logs, on their own
+     * channel and serial background queue, so floods of them never delay interactive or auth
+     * handovers. Only applies to engines started after calling this.
+     * <p>
+     * Responders receive bulk handovers on that background thread, whatever the
+     * {@link HandoverThreadMode} is.
+     */
+    public void setPriorityLanesEnabled(boolean priorityLanesEnabled) {
+        this.priorityLanesEnabled = priorityLanesEnabled;
+    }
+
+    /**
+     * Sets the listener that receives the {@link StartupMetrics} of every engine boot once the
+     * engine rendered its first frame.
+     */
+    public void setStartupMetricsListener(@Nullable StartupMetricsListener startupMetricsListener) {
+        this.startupMetricsListener = startupMetricsListener;
+    }
+
+    @Nullable
+    public StartupMetrics getStartupMetrics() {
+        return getStartupMetrics(DEFAULT_ENGINE_ID);
+    }
+
+    /**
+     * @return the phases of the last boot of the engine, or null when it was never started
+     */
+    @Nullable
+    public StartupMetrics getStartupMetrics(@NonNull String engineId) {
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        return embeddedEngine != null ? embeddedEngine.startupMetrics : null;
+    }
+
+    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder) {
+        this.startEngine(context, startConfig, handoverResponder, null);
+    }
+
+    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable CompletionHandler<Boolean> completion) {
+        this.startEngine(context, startConfig, handoverResponder, null, completion);
+    }
+
+    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
+        this.startEngine(DEFAULT_ENGINE_ID, context, startConfig, handoverResponder, libraryURI, completion);
+    }
+
+    /**
+     * Prepares the Flutter loader so a later startEngine doesn't have to wait for it.
+     * <p>
+     * The native library and the assets are loaded on a background thread by the FlutterLoader,
+     * the UI thread is only used to kick it off and to complete the initialization. This can be
+     * called from Application#onCreate without blocking the first frame of the app.
+     *
+     * @param completion called on the UI thread once the loader is initialized
+     */
+    public void prewarm(@NonNull Context context, @Nullable CompletionHandler<Boolean> completion) {
+        Runner prewarmRunner = () -> initializeLoader(context, new CompletionHandler<Boolean>() {
+            @Override
+            public void onSuccess(@Nullable Boolean data) {
+                if (completion != null) {
+                    completion.onSuccess(true);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                if (completion != null) {
+                    completion.onFailure(e);
+                }
+            }
+        });
+
+        if (UiThreadUtil.isOnUiThread()) {
+            prewarmRunner.run();
+        } else {
+            UiThreadUtil.runOnUiThread(prewarmRunner::run);
+        }
+    }
+
+    /**
+     * Starts an engine in the pool.
+     * <p>
+     * All engines are spawned from one FlutterEngineGroup, so every engine after the first one
+     * shares the isolate snapshot and assets of the others which makes it a lot cheaper in memory
+     * and startup time than a full engine.
+     * <p>
+     * When the Flutter loader isn't initialized yet (see {@link #prewarm}) this is done first
+     * without blocking the UI thread, the engine is spawned on the UI thread once the loader is ready.
+     *
+     * @param engineId the id to start the engine with, use this id for the other methods of FlutterEmbedding
+     */
+    public void startEngine(@NonNull String engineId, @NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
+        startEngine(engineId, context, Arrays.asList(startConfig), handoverResponder, libraryURI, completion);
+    }
+
+    public void startEngine(@NonNull Context context, @NonNull byte[] startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable CompletionHandler<Boolean> completion) {
+        this.startEngine(context, startConfig, handoverResponder, null, completion);
+    }
+
+    public void startEngine(@NonNull Context context, @NonNull byte[] startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
+        this.startEngine(DEFAULT_ENGINE_ID, context, startConfig, handoverResponder, libraryURI, completion);
+    }
+
+    /**
+     * Starts an engine in the pool with a binary start config, e.g. a serialized protobuf message.
+     * <p>
+     * The bytes are handed to Dart as one base64 encoded entrypoint argument, this is a lot smaller
+     * and faster to decode than a JSON list of ints. On the Dart side they are available as
+     * {@code EmbeddingController.binaryStartConfig}.
+     */
+    public void startEngine(@NonNull String engineId, @NonNull Context context, @NonNull byte[] startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
+        startEngine(engineId, context, Arrays.asList(EMPTY_START_CONFIG, Base64.encodeToString(startConfig, Base64.NO_WRAP)), handoverResponder, libraryURI, completion);
+    }
+
+    private void startEngine(@NonNull String engineId, @NonNull Context context, @NonNull List<String> entrypointArgs, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
+        // Single flight: concurrent callers for the same engine wait for the one start that is in progress
+        final EmbeddedEngine embeddedEngine;
+        final boolean running;
+        synchronized (engines) {
+            embeddedEngine = getOrCreateEmbeddedEngine(engineId);
+            running = embeddedEngine.state == EmbeddedEngine.State.RUNNING && getEngine(engineId) != null;
+            if (!running) {
+                if (completion != null) {
+                    embeddedEngine.pendingStartCompletions.add(completion);
+                }
+                if (embeddedEngine.state == EmbeddedEngine.State.STARTING) {
+                    Log.d(TAG, "Engine " + engineId + " is already starting");
+                    return;
+                }
+                embeddedEngine.state = EmbeddedEngine.State.STARTING;
+            }
+        }
+        if (running) {
+            if (completion != null) {
+                completion.onSuccess(true);
+            }
+            return;
+        }
+
+        final StartupMetrics startupMetrics = new StartupMetrics(engineId);
+        startupMetrics.startRequestedNanos = SystemClock.elapsedRealtimeNanos();
+
+        Runner engineRunner = () -> {
+            embeddedEngine.startupMetrics = startupMetrics;
+            startupMetrics.loaderInitializationStartNanos = SystemClock.elapsedRealtimeNanos();
+            initializeLoader(context, new CompletionHandler<Boolean>() {
+                @Override
+                public void onSuccess(@Nullable Boolean data) {
+                    startupMetrics.loaderInitializationEndNanos = SystemClock.elapsedRealtimeNanos();
+                    spawnEngine(embeddedEngine, context, entrypointArgs, handoverResponder, libraryURI);
+                }
+
+                @Override
+                public void onFailure(@NonNull Exception e) {
+                    completeStart(embeddedEngine, e);
+                }
+            });
+        };
+
+        if (UiThreadUtil.isOnUiThread()) {
+            engineRunner.run();
+        } else {
+            UiThreadUtil.runOnUiThread(engineRunner::run);
+        }
+    }
+
+    /**
+     * Leaves the starting state and completes every caller that waited for this start.
+     *
+     * @param error null when the engine is running
+     */
+    private void completeStart(@NonNull EmbeddedEngine embeddedEngine, @Nullable Exception error) {
+        final List<CompletionHandler<Boolean>> completions;
+        synchronized (engines) {
+            embeddedEngine.state = error == null ? EmbeddedEngine.State.RUNNING : EmbeddedEngine.State.STOPPED;
+            completions = new ArrayList<>(embeddedEngine.pendingStartCompletions);
+            embeddedEngine.pendingStartCompletions.clear();
+        }
+
+        for (CompletionHandler<Boolean> completion : completions) {
+            if (error == null) {
+                completion.onSuccess(true);
+            } else {
+                completion.onFailure(error);
+            }
+        }
+    }
+
+    /**
+     * Initializes the Flutter loader, must be called on the UI thread.
+     * <p>
+     * Both FlutterLoader#startInitialization and FlutterLoader#ensureInitializationCompleteAsync
+     * have to be called from the UI thread, but they do the heavy lifting on their own background
+     * executor and only post back to the UI thread when everything is loaded.
+     */
+    private void initializeLoader(@NonNull Context context, @NonNull CompletionHandler<Boolean> completion) {
+        final FlutterLoader flutterLoader = FlutterInjector.instance().flutterLoader();
+        if (flutterLoader.initialized()) {
+            completion.onSuccess(true);
+            return;
+        }
+
+        try {
+            final Context applicationContext = context.getApplicationContext();
+            flutterLoader.startInitialization(applicationContext);
+            flutterLoader.ensureInitializationCompleteAsync(
+                    applicationContext,
+                    null,
+                    UiThreadUtil.getMainHandler(),
+                    () -> completion.onSuccess(true)
+            );
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to initialize the Flutter loader", e);
+            completion.onFailure(e);
+        }
+    }
+
+    /**
+     * Creates the engine and runs the Dart entrypoint, must be called on the UI thread once the
+     * Flutter loader is initialized.
+     */
+    private void spawnEngine(@NonNull EmbeddedEngine embeddedEngine, @NonNull Context context, @NonNull List<String> entrypointArgs, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI) {
+        final String engineId = embeddedEngine.id;
+        if (engines.get(engineId) != embeddedEngine) {
+            completeStart(embeddedEngine, new Exception("Engine " + engineId + " was stopped while it was starting."));
+            return;
+        }
+
+        embeddedEngine.handoverResponder = handoverResponder;
+        embeddedEngine.applicationContext = context.getApplicationContext();
+        embeddedEngine.entrypointArgs = entrypointArgs;
+        embeddedEngine.libraryURI = libraryURI;
+        embeddedEngine.evicted = false;
+
+        final FlutterLoader flutterLoader = FlutterInjector.instance().flutterLoader();
+        if (!flutterLoader.initialized()) {
+            completeStart(embeddedEngine, new Exception("DartEntrypoints can only be created once the FlutterLoader is initialized."));
+            return;
+        }
+
+        try {
+            final FlutterEngineGroup flutterEngineGroup = getOrCreateEngineGroup(context);
+            final FlutterEngineGroup.Options options = new FlutterEngineGroup.Options(context)
+                    .setDartEntrypoint(
+                            //DartExecutor.DartEntrypoint.createDefault()
+                            (libraryURI == null) ?
+                                    new DartExecutor.DartEntrypoint(flutterLoader.findAppBundlePath(), "main") :
+                                    new DartExecutor.DartEntrypoint(flutterLoader.findAppBundlePath(), libraryURI, "main"))
+                    .setDartEntrypointArgs(entrypointArgs);
+            if (embeddedEngine.initialRoute != null) {
+                options.setInitialRoute(embeddedEngine.initialRoute);
+                // Only the start it was requested for opens the route, restarts after eviction open the home route
+                embeddedEngine.initialRoute = null;
+            }
+
+            // The plugins of the spawned engine attach during construction
+            this.attachingEngineId = engineId;
+            try {
+                embeddedEngine.flutterEngine = flutterEngineGroup.createAndRunEngine(options);
+            } finally {
+                this.attachingEngineId = null;
+            }
+            if (embeddedEngine.startupMetrics != null) {
+                // createAndRunEngine constructs the engine and runs the entrypoint in one call
+                final long createdNanos = SystemClock.elapsedRealtimeNanos();
+                embeddedEngine.startupMetrics.engineCreatedNanos = createdNanos;
+                embeddedEngine.startupMetrics.dartEntrypointExecutedNanos = createdNanos;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start engine " + engineId, e);
+            completeStart(embeddedEngine, e);
+            return;
+        }
+
+        // Cache the pre-warmed FlutterEngine to be used later by FlutterFragment.
+        FlutterEngineCache
+                .getInstance()
+                .put(engineId, embeddedEngine.flutterEngine);
+
+        observeFirstFrame(embeddedEngine);
+        registerMemoryCallbacks(embeddedEngine.applicationContext);
+        if (embeddedEngine.surfaceCount == 0) {
+            scheduleIdleEviction(embeddedEngine);
+        }
+
+        completeStart(embeddedEngine, null);
+    }
+
+    private void observeFirstFrame(@NonNull EmbeddedEngine embeddedEngine) {
+        final FlutterEngine engine = embeddedEngine.flutterEngine;
+        final StartupMetrics startupMetrics = embeddedEngine.startupMetrics;
+        if (engine == null || startupMetrics == null) {
+            return;
+        }
+
+        engine.getRenderer().addIsFlutterUiDisplayedListener(new FlutterUiDisplayListener() {
+            @Override
+            public void onFlutterUiDisplayed() {
+                engine.getRenderer().removeIsFlutterUiDisplayedListener(this);
+                startupMetrics.firstFrameNanos = SystemClock.elapsedRealtimeNanos();
+                Log.d(TAG, "Engine boot " + startupMetrics);
+
+                final StartupMetricsListener listener = startupMetricsListener;
+                if (listener != null) {
+                    listener.onStartupMetrics(startupMetrics);
+                }
+            }
+
+            @Override
+            public void onFlutterUiNoLongerDisplayed() {
+            }
+        });
+    }
+
+    public void startScreen(Context context){
+        startScreen(DEFAULT_ENGINE_ID, context);
+    }
+
+    /**
+     * Starts a FlutterActivity on the engine. Called off the UI thread, the activity is started from
+     * the UI thread, which is where the surfaces of engines are counted.
+     */
+    public void startScreen(@NonNull String engineId, Context context){
+        if (!UiThreadUtil.isOnUiThread()) {
+            UiThreadUtil.runOnUiThread(() -> {
+                try {
+                    startScreen(engineId, context);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to start a screen on engine " + engineId, e);
+                }
+            });
+            return;
+        }
+
+        registerScreenCallbacks(context);
+        // The screen counts as a surface from now on, the activity takes it over once it is created
+        attachSurface(engineId);
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        if (embeddedEngine != null) {
+            embeddedEngine.launchingScreens++;
+        }
+
+        try {
+            context.startActivity(FlutterActivity
+                    .withCachedEngine(engineId)
+                    .build(context));
+        } catch (RuntimeException e) {
+            if (embeddedEngine != null) {
+                embeddedEngine.launchingScreens--;
+                detachSurface(engineId);
+            }
+            throw e;
+        }
+    }
+
+    public void startScreen(Context context, @NonNull String route){
+        startScreen(DEFAULT_ENGINE_ID, context, route);
+    }
+
+    public void startScreen(@NonNull String engineId, Context context, @NonNull String route){
+        prewarmRoute(engineId, route);
+        startScreen(engineId, context);
+    }
+
+    public void prewarmRoute(@NonNull String route) {
+        prewarmRoute(DEFAULT_ENGINE_ID, route);
+    }
+
+    /**
+     * Navigates the engine to the route while it is still offscreen, so the first visible frame is
+     * the destination instead of the home screen followed by a transition.
+     * <p>
+     * A running engine gets the route pushed on its navigation channel, otherwise the next start of
+     * the engine opens the route as initial route. Engines that were never started are ignored.
+     */
+    public void prewarmRoute(@NonNull String engineId, @NonNull String route) {
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        if (embeddedEngine == null) {
+            Log.e(TAG, "Can't prewarm route " + route + ", engine " + engineId + " was never started");
+            return;
+        }
+        Runner applyRoute = () -> {
+            final FlutterEngine engine = embeddedEngine.flutterEngine;
+            if (engine != null && engines.get(engineId) == embeddedEngine) {
+                Log.d(TAG, "Pushing route " + route + " on engine " + engineId);
+                engine.getNavigationChannel().pushRoute(route);
+            } else {
+                embeddedEngine.initialRoute = route;
+            }
+        };
+
+        if (UiThreadUtil.isOnUiThread()) {
+            applyRoute.run();
+        } else {
+            UiThreadUtil.runOnUiThread(applyRoute::run);
+        }
+    }
+
+    public void stopEngine() {
+        stopEngine(DEFAULT_ENGINE_ID);
+    }
+
+    public void stopEngine(@NonNull String engineId) {
+        try {
+            Runner destroyEngine = () -> {
+                FlutterEngine engine = getEngine(engineId);
+                if (engine != null) {
+                    engine.destroy();
+                    FlutterEngineCache.getInstance().remove(engineId);
+                }
+
+                EmbeddedEngine embeddedEngine = engines.remove(engineId);
+                if (embeddedEngine != null) {
+                    cancelIdleEviction(embeddedEngine);
+                    releaseEngineState(embeddedEngine, new Exception("Engine " + engineId + " was stopped."));
+                }
+            };
+
+            if (UiThreadUtil.isOnUiThread()) {
+                destroyEngine.run();
+            } else {
+                UiThreadUtil.runOnUiThread(destroyEngine::run);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to stop engine", e);
+        }
+    }
+
+    /**
+     * Called on the UI thread by a fragment or a screen before it attaches to the engine, an engine
+     * with attached surfaces is never evicted. Restarts the engine when it was evicted in the meantime.
+     */
+    void attachSurface(@Nullable String engineId) {
+        if (engineId == null) {
+            return;
+        }
+        restartIfEvicted(engineId);
+
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        if (embeddedEngine != null) {
+            embeddedEngine.surfaceCount++;
+            cancelIdleEviction(embeddedEngine);
+        }
+    }
+
+    /**
+     * Called on the UI thread by a fragment or a screen when it detached from the engine.
+     */
+    void detachSurface(@Nullable String engineId) {
+        final EmbeddedEngine embeddedEngine = engineId != null ? engines.get(engineId) : null;
+        if (embeddedEngine == null || embeddedEngine.surfaceCount == 0) {
+            return;
+        }
+
+        embeddedEngine.surfaceCount--;
+        if (embeddedEngine.surfaceCount == 0) {
+            scheduleIdleEviction(embeddedEngine);
+        }
+    }
+
+    /**
+     * Called by a fragment before it stops, takes a snapshot of what the engine shows right now.
+     */
+    void captureLastFrame(@NonNull Context context, @Nullable String engineId) {
+        final SnapshotMode mode = snapshotMode;
+        final FlutterEngine engine = engineId != null ? getEngine(engineId) : null;
+        if (mode == SnapshotMode.OFF || engine == null || !engine.getRenderer().isDisplayingFlutterUi()) {
+            return;
+        }
+
+        try {
+            final Bitmap bitmap = engine.getRenderer().getBitmap();
+            if (bitmap != null) {
+                lastFrameSnapshots.put(context.getApplicationContext(), mode, engineId, bitmap);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to capture the last frame of engine " + engineId, e);
+        }
+    }
+
+    /**
+     * @return true when fragments may get a last frame to show, see {@link #getLastFrame}
+     */
+    boolean isCapturingLastFrames() {
+        return snapshotMode != SnapshotMode.OFF;
+    }
+
+    /**
+     * Passes the last frame captured for the engine, or null when there is none, to the completion
+     * on the UI thread. Frames on disk are decoded in the background, so this can be after the
+     * fragment created its view.
+     */
+    void getLastFrame(@NonNull Context context, @Nullable String engineId, @NonNull CompletionHandler<Bitmap> completion) {
+        if (snapshotMode == SnapshotMode.OFF || engineId == null) {
+            completion.onSuccess(null);
+            return;
+        }
+        lastFrameSnapshots.get(context.getApplicationContext(), snapshotMode, engineId, completion);
+    }
+
+    private void registerScreenCallbacks(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        if (!screenCallbacksRegistered && applicationContext instanceof Application) {
+            ((Application) applicationContext).registerActivityLifecycleCallbacks(screenCallbacks);
+            screenCallbacksRegistered = true;
+        }
+    }
+
+    /**
+     * Counts a FlutterActivity on one of our engines as a surface, before it looks up the engine.
+     */
+    private void onScreenCreated(@NonNull Activity activity) {
+        final String engineId = activity instanceof FlutterActivity ? ((FlutterActivity) activity).getCachedEngineId() : null;
+        final EmbeddedEngine embeddedEngine = engineId != null ? engines.get(engineId) : null;
+        if (embeddedEngine == null) {
+            return;
+        }
+
+        if (embeddedEngine.launchingScreens > 0) {
+            // startScreen already counted it
+            embeddedEngine.launchingScreens--;
+            restartIfEvicted(engineId);
+        } else {
+            // Started by the host itself, or recreated after a configuration change
+            attachSurface(engineId);
+        }
+        screens.put(activity, embeddedEngine);
+    }
+
+    private void onScreenDestroyed(@NonNull Activity activity) {
+        final EmbeddedEngine embeddedEngine = screens.remove(activity);
+        // Skip engines that were stopped meanwhile, their surfaces are gone with them
+        if (embeddedEngine != null && engines.get(embeddedEngine.id) == embeddedEngine) {
+            detachSurface(embeddedEngine.id);
+        }
+    }
+
+    private void restartIfEvicted(@NonNull String engineId) {
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        if (embeddedEngine == null || !embeddedEngine.evicted
+                || embeddedEngine.applicationContext == null || embeddedEngine.entrypointArgs == null || embeddedEngine.handoverResponder == null) {
+            return;
+        }
+
+        Log.d(TAG, "Restarting evicted engine " + engineId);
+        // The loader is already initialized, so on the UI thread this restarts the engine synchronously
+        startEngine(engineId, embeddedEngine.applicationContext, embeddedEngine.entrypointArgs, embeddedEngine.handoverResponder, embeddedEngine.libraryURI, null);
+    }
+
+    private void scheduleIdleEviction(@NonNull EmbeddedEngine embeddedEngine) {
+        cancelIdleEviction(embeddedEngine);
+        if (idleEngineTimeout < 0) {
+            return;
+        }
+
+        embeddedEngine.idleEviction = () -> {
+            embeddedEngine.idleEviction = null;
+            if (embeddedEngine.surfaceCount == 0) {
+                evictEngine(embeddedEngine);
+            }
+        };
+        UiThreadUtil.runOnUiThread(embeddedEngine.idleEviction, idleEngineTimeout);
+    }
+
+    private void cancelIdleEviction(@NonNull EmbeddedEngine embeddedEngine) {
+        if (embeddedEngine.idleEviction != null) {
+            UiThreadUtil.cancelOnUiThread(embeddedEngine.idleEviction);
+            embeddedEngine.idleEviction = null;
+        }
+    }
+
+    /**
+     * Destroys the engine but keeps what it was started with, so it can be restarted on next use.
+     * An engine that shows its UI is kept, even when it shows it in a view we don't know about.
+     */
+    private void evictEngine(@NonNull EmbeddedEngine embeddedEngine) {
+        final FlutterEngine engine = getEngine(embeddedEngine.id);
+        if (engine == null || engine.getRenderer().isDisplayingFlutterUi()) {
+            return;
+        }
+
+        Log.d(TAG, "Evicting unused engine " + embeddedEngine.id);
+        engine.destroy();
+        FlutterEngineCache.getInstance().remove(embeddedEngine.id);
+        embeddedEngine.flutterEngine = null;
+        embeddedEngine.evicted = true;
+        synchronized (engines) {
+            embeddedEngine.state = EmbeddedEngine.State.STOPPED;
+        }
+        // The restarted engine opens the home route, its last frame would show the wrong screen
+        releaseEngineState(embeddedEngine, new Exception("Engine " + embeddedEngine.id + " was evicted."));
+    }
+
+    /**
+     * Drops what belongs to a destroyed engine, for stopped and evicted engines alike. Handovers
+     * that are still queued or waiting for the host fail with the reason.
+     */
+    private void releaseEngineState(@NonNull EmbeddedEngine embeddedEngine, @NonNull Exception reason) {
+        embeddedEngine.chunkedTransfers.clear();
+        synchronized (engines) {
+            if (embeddedEngine.accessTokenCache != null) {
+                // Stops its refreshes, they would call the responder of the destroyed engine
+                embeddedEngine.accessTokenCache.invalidate();
+                embeddedEngine.accessTokenCache = null;
+            }
+        }
+        handoverLimiter.failAll(embeddedEngine.id, reason);
+        pendingHandovers.failAll(embeddedEngine.id, reason);
+        if (embeddedEngine.applicationContext != null) {
+            lastFrameSnapshots.remove(embeddedEngine.applicationContext, embeddedEngine.id);
+        }
+    }
 
-    private static class LazyHolder {
-        static final FlutterEmbedding INSTANCE = new FlutterEmbedding();
+    private void registerMemoryCallbacks(@NonNull Context applicationContext) {
+        if (!memoryCallbacksRegistered) {
+            applicationContext.registerComponentCallbacks(memoryCallbacks);
+            memoryCallbacksRegistered = true;
+        }
     }
 
-    private FlutterEngine flutterEngine;
-    private HandoverResponderInterface handoverResponder;
+    private void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            lastFrameSnapshots.trimMemory();
+        }
 
-    /// The MethodChannel that will the communication between Flutter and native Android
-    ///
-    /// This local reference serves to register the plugin with the Flutter Engine and unregister it
-    /// when the Flutter Engine is detached from the Activity
-    private MethodChannel channel;
+        for (EmbeddedEngine embeddedEngine : engines.values()) {
+            final FlutterEngine engine = embeddedEngine.flutterEngine;
+            // Engines with an attached fragment or screen already get this from the Flutter embedding
+            if (engine == null || embeddedEngine.surfaceCount > 0) {
+                continue;
+            }
 
-    private FlutterEmbedding() {
+            if (evictUnusedEnginesOnTrimMemory && level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                cancelIdleEviction(embeddedEngine);
+                evictEngine(embeddedEngine);
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                engine.getSystemChannel().sendMemoryPressureWarning();
+            }
+        }
     }
 
-    public static FlutterEmbedding instance() {
-        return LazyHolder.INSTANCE;
+    /**
+     * Gets the FlutterEngine in use.
+     *
+     * @return the FlutterEngine
+     */
+    public FlutterEngine getEngine() {
+        return getEngine(DEFAULT_ENGINE_ID);
     }
 
-    MethodChannel createChannel(@NonNull FlutterPlugin.FlutterPluginBinding flutterPluginBinding) {
-        assert (channel == null);
-        this.channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), FlutterEmbedding.CHANNEL_NAME);
-        channel.setMethodCallHandler(this);
+    /**
+     * Gets the FlutterEngine started with the given engine id.
+     *
+     * @return the FlutterEngine or null when no engine with this id is running
+     */
+    @Nullable
+    public FlutterEngine getEngine(@NonNull String engineId) {
+        return FlutterEngineCache.getInstance().get(engineId);
+    }
 
-        return this.channel;
+    public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        final EmbeddedEngine embeddedEngine = engines.get(DEFAULT_ENGINE_ID);
+        if (embeddedEngine == null) {
+            result.error("NO_ENGINE", "No Flutter engine running.", null);
+            return;
+        }
+        onMethodCall(embeddedEngine, call, result);
     }
 
-    void detachChannel() {
-        channel.setMethodCallHandler(null);
+    private void onMethodCall(@NonNull EmbeddedEngine embeddedEngine, @NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Log.d(TAG, "received MethodCall from " + CHANNEL_NAME + " " + call.method + " with " + call.arguments);
+
+        final Map<String, Object> params = (call.arguments instanceof Map) ? (Map<String, Object>) call.arguments : null;
+
+        switch (call.method) {
+            case METHOD_CHANNEL_READY:
+                embeddedEngine.grpcFramesReady = params != null && Boolean.TRUE.equals(params.get(CAPABILITY_GRPC_FRAMES));
+                embeddedEngine.channelReady = true;
+                result.success(null);
+                flushOutbox(embeddedEngine.id);
+                break;
+            case METHOD_HANDOVER_BATCH:
+                // The Dart side doesn't wait for batched handovers to be handled
+                result.success(null);
+                if (params != null) {
+                    for (Map.Entry<String, Object> batch : params.entrySet()) {
+                        dispatchHandoverBatch(embeddedEngine, batch.getKey(), (List<Map<String, Object>>) batch.getValue());
+                    }
+                }
+                break;
+            case ChunkedTransfers.METHOD_CHUNK:
+                embeddedEngine.chunkedTransfers.append(params);
+                result.success(null);
+                break;
+            case METHOD_REQUEST_LAYOUT:
+                // Views can only be touched on the UI thread, which is not where background task queues deliver
+                if (UiThreadUtil.isOnUiThread()) {
+                    requestLayout(result);
+                } else {
+                    UiThreadUtil.runOnUiThread(() -> requestLayout(result));
+                }
+                break;
+            default:
+                if (!call.method.startsWith(INTERNAL_METHOD_PREFIX)) {
+                    recordFirstHandover(embeddedEngine);
+                }
+                final Map<String, Object> resolved;
+                try {
+                    resolved = embeddedEngine.chunkedTransfers.resolve(params);
+                } catch (IllegalStateException e) {
+                    Log.e(TAG, "Failed handover " + call.method, e);
+                    result.error(ERROR_CHUNKED_TRANSFER, e.getMessage(), null);
+                    break;
+                }
+                dispatchHandover(embeddedEngine, call.method, resolved, result);
+                break;
+        }
     }
 
-    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder) {
-        this.startEngine(context, startConfig, handoverResponder, null);
+    /**
+     * Records the first handover the Dart side sends after a boot, the internal messages of the
+     * embedding channel don't count.
+     */
+    private void recordFirstHandover(@NonNull EmbeddedEngine embeddedEngine) {
+        final StartupMetrics startupMetrics = embeddedEngine.startupMetrics;
+        if (startupMetrics != null && startupMetrics.firstHandoverNanos == StartupMetrics.NOT_REACHED) {
+            startupMetrics.firstHandoverNanos = SystemClock.elapsedRealtimeNanos();
+        }
     }
 
-    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable CompletionHandler<Boolean> completion) {
-        this.startEngine(context, startConfig, handoverResponder, null, completion);
+    @Nullable
+    private HandoverHandler findHandoverHandler(@NonNull String name) {
+        final Handover handover = Handover.fromEventName(name);
+        return handover != null ? handoverHandlers.get(handover) : customHandoverHandlers.get(name);
     }
 
-    public void startEngine(@NonNull Context context, @NonNull String startConfig, @NonNull HandoverResponderInterface handoverResponder, @Nullable String libraryURI, @Nullable CompletionHandler<Boolean> completion) {
-        if (this.flutterEngine != null) {
-            if (completion != null) {
-                completion.onSuccess(true);
-            }
+    private void dispatchHandover(@NonNull EmbeddedEngine embeddedEngine, @NonNull String name, @Nullable Map<String, Object> params, @NonNull MethodChannel.Result result) {
+        final HandoverHandler handler = findHandoverHandler(name);
+        final HandoverResponderInterface handoverResponder = embeddedEngine.handoverResponder;
+        if (handler == null && (strictHandoverDispatch || handoverResponder == null)) {
+            Log.e(TAG, "No handler for handover " + name);
+            result.notImplemented();
             return;
         }
 
-        Runner engineRunner = () -> {
-            this.handoverResponder = handoverResponder;
-            this.flutterEngine = new FlutterEngine(context);
-
-            FlutterLoader flutterLoader = FlutterInjector.instance().flutterLoader();
-
-            if (!flutterLoader.initialized()) {
-                completion.onFailure(new Exception("DartEntrypoints can only be created once a FlutterEngine is created."));
-                throw new AssertionError(
-                        "DartEntrypoints can only be created once a FlutterEngine is created.");
+        handoverLimiter.submit(embeddedEngine.id, name, defaultHandoverTimeout, new HandoverLimiter.Call() {
+            @Override
+            public void start(long timeoutInMs) {
+                startHandover(embeddedEngine, name, params, handler, timeoutInMs, result);
             }
-            
 
-            if (!this.flutterEngine.getDartExecutor().isExecutingDart()) {
-                this.flutterEngine.getDartExecutor().executeDartEntrypoint(
-                        //DartExecutor.DartEntrypoint.createDefault()
-                        (libraryURI == null) ?
-                                new DartExecutor.DartEntrypoint(flutterLoader.findAppBundlePath(), "main") :
-                                new DartExecutor.DartEntrypoint(flutterLoader.findAppBundlePath(), libraryURI, "main"),
-                                Arrays.asList(startConfig)
-                );
+            @Override
+            public void reject(@NonNull Exception e) {
+                Log.e(TAG, "Rejected handover " + e.getMessage());
+                final String code = e instanceof RejectedExecutionException ? ERROR_BACKPRESSURE
+                        : e instanceof TimeoutException ? ERROR_TIMEOUT
+                        : e.getMessage();
+                result.error(code, e.getMessage(), null);
             }
+        });
+    }
 
-            // Cache the pre-warmed FlutterEngine to be used later by FlutterFragment.
-            FlutterEngineCache
-                    .getInstance()
-                    .put(FlutterEmbedding.ENGINE_ID, this.flutterEngine);
+    private void startHandover(@NonNull EmbeddedEngine embeddedEngine, @NonNull String name, @Nullable Map<String, Object> params,
+                               @Nullable HandoverHandler handler, long timeoutInMs, @NonNull MethodChannel.Result result) {
+        final CompletionHandler<Object> completion = new CompletionHandler<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object data) {
+                Log.d(TAG, "onSuccess " + data);
+                handoverLimiter.release(name);
+                result.success(data);
+            }
 
-            if (completion != null) {
-                completion.onSuccess(true);
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                Log.e(TAG, "onFailure " + e.getMessage());
+                handoverLimiter.release(name);
+                result.error(e instanceof TimeoutException ? ERROR_TIMEOUT : e.getMessage(), e.getMessage(), e.getStackTrace());
             }
         };
 
-        if (UiThreadUtil.isOnUiThread()) {
-            engineRunner.run();
+        // The responder is looked up on every load, so a token refresh never reaches a stale one
+        final AccessTokenCache.Loader hostCall = handler != null
+                ? loaded -> handler.onHandover(name, params, loaded)
+                : loaded -> {
+                    final HandoverResponderInterface handoverResponder = embeddedEngine.handoverResponder;
+                    if (handoverResponder != null) {
+                        handoverResponder.invokeHandover(name, params, loaded);
+                    } else {
+                        loaded.onFailure(new Exception("Engine " + embeddedEngine.id + " has no handover responder"));
+                    }
+                };
+        final AccessTokenCache tokenCache = getAccessTokenCache(embeddedEngine);
+        if (tokenCache != null && tokenCache.settings.handles(name)) {
+            tokenCache.get(AccessTokenCache.keyOf(name, params), trackedLoader(embeddedEngine, name, timeoutInMs, hostCall),
+                    refreshLoader(embeddedEngine, name, name, hostCall), completion);
         } else {
-            UiThreadUtil.runOnUiThread(engineRunner::run);
+            hostCall.load(pendingHandovers.track(embeddedEngine.id, name, PendingHandover.Direction.TO_HOST, timeoutInMs, null, completion));
         }
     }
 
-    public void startScreen(Context context){
-        context.startActivity(FlutterActivity
-                .withCachedEngine(FlutterEmbedding.ENGINE_ID)
-                .build(context));
+    /**
+     * Tracks the host calls of the access token cache instead of the requests, so a call that is
+     * never answered times out and the requests waiting on it fail with it.
+     */
+    @NonNull
+    private AccessTokenCache.Loader trackedLoader(@NonNull EmbeddedEngine embeddedEngine, @NonNull String name, long timeoutInMs,
+                                                  @NonNull AccessTokenCache.Loader hostCall) {
+        return loaded -> hostCall.load(pendingHandovers.track(embeddedEngine.id, name, PendingHandover.Direction.TO_HOST, timeoutInMs, null, loaded));
     }
 
-    public void stopEngine() {
-        try {
-            Runner destroyEngine = () -> {
-                FlutterEngine engine = getEngine();
-                if (engine != null) {
-                    engine.destroy();
-                    FlutterEngineCache.getInstance().remove(FlutterEmbedding.ENGINE_ID);
-                }
+    /**
+     * Token refreshes are handovers of their own, they go through the in-flight limits and get the
+     * default deadline like handovers from Flutter.
+     */
+    @NonNull
+    private AccessTokenCache.Loader refreshLoader(@NonNull EmbeddedEngine embeddedEngine, @NonNull String limitName, @NonNull String name,
+                                                  @NonNull AccessTokenCache.Loader hostCall) {
+        return loaded -> handoverLimiter.submit(embeddedEngine.id, limitName, defaultHandoverTimeout, new HandoverLimiter.Call() {
+            @Override
+            public void start(long timeoutInMs) {
+                hostCall.load(pendingHandovers.track(embeddedEngine.id, name, PendingHandover.Direction.TO_HOST, timeoutInMs, null, new CompletionHandler<Object>() {
+                    @Override
+                    public void onSuccess(@Nullable Object data) {
+                        handoverLimiter.release(limitName);
+                        loaded.onSuccess(data);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        handoverLimiter.release(limitName);
+                        loaded.onFailure(e);
+                    }
+                }));
+            }
 
-                this.flutterEngine = null;
-                this.handoverResponder = null;
-                this.channel = null;
-            };
+            @Override
+            public void reject(@NonNull Exception e) {
+                loaded.onFailure(e);
+            }
+        });
+    }
 
-            if (UiThreadUtil.isOnUiThread()) {
-                destroyEngine.run();
-            } else {
-                UiThreadUtil.runOnUiThread(destroyEngine::run);
+    private void dispatchHandoverBatch(@NonNull EmbeddedEngine embeddedEngine, @NonNull String name, @NonNull List<Map<String, Object>> batch) {
+        final HandoverHandler handler = findHandoverHandler(name);
+        final HandoverResponderInterface handoverResponder = embeddedEngine.handoverResponder;
+        if (handler != null) {
+            for (Map<String, Object> data : batch) {
+                handler.onHandover(name, data, pendingHandovers.track(embeddedEngine.id, name, PendingHandover.Direction.TO_HOST, defaultHandoverTimeout, null, IGNORED_COMPLETION));
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to stop engine", e);
+        } else if (strictHandoverDispatch || handoverResponder == null) {
+            Log.e(TAG, "No handler for " + batch.size() + " batched handovers " + name);
+        } else {
+            final long startedNanos = SystemClock.elapsedRealtimeNanos();
+            handoverResponder.invokeHandoverBatch(name, batch);
+            pendingHandovers.metrics().recordDispatched(name, PendingHandover.Direction.TO_HOST, batch.size(), SystemClock.elapsedRealtimeNanos() - startedNanos);
+        }
+    }
+
+    private void requestLayout(@NonNull MethodChannel.Result result) {
+        // a bug in react native requires the layout to be done manually https://github.com/facebook/react-native/issues/17968
+        View view = FlutterEmbeddingFlutterFragment.lastview != null ? FlutterEmbeddingFlutterFragment.lastview.get() : null;
+        if (view == null || !(view instanceof FrameLayout)) {
+            Log.d(TAG, "internalRequestLayout lastview is null or not a FrameLayout");
+            result.success(null);
+            return;
+        }
+        FrameLayout fl = (FrameLayout) view;
+        fl.measure(View.MeasureSpec.makeMeasureSpec(fl.getWidth(), View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(fl.getHeight(), View.MeasureSpec.EXACTLY));
+        fl.layout(fl.getLeft(), fl.getTop(), fl.getRight(), fl.getBottom());
+        Log.d(TAG, "internalRequestLayout left: " + fl.getLeft() + " top: " + fl.getTop() + " right: " + fl.getRight() + " bottom: " + fl.getBottom() + " width: " + fl.getWidth() + " height: " + fl.getHeight() + " childCount: " + fl.getChildCount() + " fl: " + fl.toString());
+        for (int i = 0; i < fl.getChildCount(); i++) {
+            View child = fl.getChildAt(i);
+            Log.d(TAG, "internalRequestLayout child: left:" + child.getLeft() + " top: " + child.getTop() + " right: " + child.getRight() + " bottom: " + child.getBottom() + " width: " + child.getWidth() + " height: " + child.getHeight() + " child: " + child.toString());
         }
+        fl.requestLayout();
+    }
+
+    // TODO should data be nonNull?
+    public void invokeHandover(@NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion) {
+        invokeHandover(DEFAULT_ENGINE_ID, eventName, data, completion);
+    }
+
+    public void invokeHandover(@NonNull String engineId, @NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion) {
+        invokeHandover(engineId, eventName, data, defaultHandoverTimeout, null, completion);
     }
 
     /**
-     * Gets the FlutterEngine in use.
+     * Invokes a handover on Flutter that fails when it isn't answered in time or when it is cancelled.
      *
-     * @return the FlutterEngine
+     * @param timeoutInMs       the deadline of the handover, 0 waits forever
+     * @param cancellationToken cancels the handover while it is in flight
      */
-    public FlutterEngine getEngine() {
-        return FlutterEngineCache.getInstance().get(FlutterEmbedding.ENGINE_ID);
+    public void invokeHandover(@NonNull String engineId, @NonNull String eventName, @NonNull Map<String, Object> data, long timeoutInMs, @Nullable HandoverCancellationToken cancellationToken, @Nullable CompletionHandler<Object> completion) {
+        sendHandover(engineId, eventName, data,
+                pendingHandovers.track(engineId, eventName, PendingHandover.Direction.TO_FLUTTER, timeoutInMs, cancellationToken, completion));
     }
 
-    public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
-        Log.d(TAG, "received MethodCall from " + CHANNEL_NAME + " " + call.method + " with " + call.arguments);
-
-        final Map<String, Object> params = (call.arguments instanceof Map) ? (Map<String, Object>) call.arguments : null;
-
-        if (call.method.equals("internalRequestLayout")) {
-            // a bug in react native requires the layout to be done manually https://github.com/facebook/react-native/issues/17968
-            View view = FlutterEmbeddingFlutterFragment.lastview != null ? FlutterEmbeddingFlutterFragment.lastview.get() : null;
-            if (view == null || !(view instanceof FrameLayout)) {
-                Log.d(TAG, "internalRequestLayout lastview is null or not a FrameLayout");
-                result.success(null);
-                return;
-            }
-            FrameLayout fl = (FrameLayout) view;
-            fl.measure(View.MeasureSpec.makeMeasureSpec(fl.getWidth(), View.MeasureSpec.EXACTLY),
-                    View.MeasureSpec.makeMeasureSpec(fl.getHeight(), View.MeasureSpec.EXACTLY));
-            fl.layout(fl.getLeft(), fl.getTop(), fl.getRight(), fl.getBottom());
-            Log.d(TAG, "internalRequestLayout left: " + fl.getLeft() + " top: " + fl.getTop() + " right: " + fl.getRight() + " bottom: " + fl.getBottom() + " width: " + fl.getWidth() + " height: " + fl.getHeight() + " childCount: " + fl.getChildCount() + " fl: " + fl.toString());
-            for (int i = 0; i < fl.getChildCount(); i++) {
-                View child = fl.getChildAt(i);
-                Log.d(TAG, "internalRequestLayout child: left:" + child.getLeft() + " top: " + child.getTop() + " right: " + child.getRight() + " bottom: " + child.getBottom() + " width: " + child.getWidth() + " height: " + child.getHeight() + " child: " + child.toString());
-            }
-            fl.requestLayout();
+    private void sendHandover(@NonNull String engineId, @NonNull String eventName, @NonNull Map<String, Object> data, @NonNull CompletionHandler<Object> completion) {
+        if (outboxCapacity > 0) {
+            // Queued, or sent in order with the handovers the outbox flushes
+            getOrCreateOutbox(engineId).offer(eventName, data, completion);
         } else {
-            handoverResponder.invokeHandover(
-                    call.method,
-                    params,
-                    new CompletionHandler<Object>() {
-                        @Override
-                        public void onSuccess(@Nullable Object data) {
-                            Log.d(TAG, "onSuccess " + data);
-                            result.success(data);
-                        }
-
-                        @Override
-                        public void onFailure(@NonNull Exception e) {
-                            Log.e(TAG, "onFailure " + e.getMessage());
-                            result.error(e.getMessage(), null, e.getStackTrace());
-                        }
-                    });          
-            return;
+            deliverHandover(engineId, eventName, data, completion);
         }
     }
 
-    // TODO should data be nonNull?
-    public void invokeHandover(@NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion) {
+    private void deliverHandover(@NonNull String engineId, @NonNull String eventName, @NonNull Map<String, Object> data, @NonNull CompletionHandler<Object> completion) {
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        final MethodChannel channel = embeddedEngine != null ? embeddedEngine.channel : null;
         // Check channel in stead of flutterEngine, because embedding Flutter doesn't create a FlutterEngine
-        if (this.channel != null) {
+        if (channel != null) {
+            final ChunkedTransfers.Outgoing chunked = chunkSize > 0 ? ChunkedTransfers.split(data, chunkSize, nextTransferId) : null;
+            final Map<String, Object> message = chunked != null ? chunked.message : data;
             Runner invokeHandover = () -> {
                 try {
-                    this.channel.invokeMethod(eventName, data, new MethodChannel.Result() {
+                    channel.invokeMethod(eventName, message, new MethodChannel.Result() {
                         @Override
                         public void success(@Nullable Object result) {
                             Log.d(TAG, "Posting externalData to FlutterEmbedding success");
@@ -258,16 +1586,230 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
                 }
             };
 
+            final Runner send = chunked != null ? () -> sendChunks(channel, chunked, invokeHandover, completion) : invokeHandover;
             if (UiThreadUtil.isOnUiThread()) {
-                invokeHandover.run();
+                send.run();
             } else {
-                UiThreadUtil.runOnUiThread(invokeHandover::run);
+                UiThreadUtil.runOnUiThread(send::run);
             }
         } else {
             completion.onFailure(new Exception("No Flutter engine running."));
         }
     }
 
+    /**
+     * Sends the chunks one by one, the next one only after Flutter received the previous one, and
+     * then the handover itself. Must be called on the UI thread.
+     */
+    private void sendChunks(@NonNull MethodChannel channel, @NonNull ChunkedTransfers.Outgoing chunked, @NonNull Runner then, @NonNull CompletionHandler<Object> completion) {
+        final Map<String, Object> chunk = chunked.nextChunk();
+        if (chunk == null) {
+            then.run();
+            return;
+        }
+
+        channel.invokeMethod(ChunkedTransfers.METHOD_CHUNK, chunk, new MethodChannel.Result() {
+            @Override
+            public void success(@Nullable Object result) {
+                // Posted, so other work on the UI thread gets a turn between chunks
+                UiThreadUtil.runOnUiThread(() -> sendChunks(channel, chunked, then, completion));
+            }
+
+            @Override
+            public void error(String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+                completion.onFailure(new Exception("Sending chunk failed " + errorMessage));
+            }
+
+            @Override
+            public void notImplemented() {
+                completion.onFailure(new Exception("Sending chunk failed with notImplemented"));
+            }
+        });
+    }
+
+    public void invokeGrpc(@NonNull String service, @NonNull String method, @NonNull byte[] request, @Nullable CompletionHandler<byte[]> completion) {
+        invokeGrpc(DEFAULT_ENGINE_ID, service, method, request, completion);
+    }
+
+    /**
+     * Invokes a gRPC call on a service that Flutter registered with addEmbeddingHandoverService.
+     * The request and the response are the serialized protobuf messages, they are sent as binary
+     * frames without wrapping them in a map.
+     * <p>
+     * Falls back to {@link #invokeHandover} when the Dart side isn't listening yet or said it doesn't
+     * handle binary frames.
+     */
+    public void invokeGrpc(@NonNull String engineId, @NonNull String service, @NonNull String method, @NonNull byte[] request, @Nullable CompletionHandler<byte[]> completion) {
+        invokeGrpc(engineId, service, method, request, defaultHandoverTimeout, null, completion);
+    }
+
+    /**
+     * Same as {@link #invokeGrpc(String, String, String, byte[], CompletionHandler)} with a deadline
+     * and a cancellation token, see {@link #invokeHandover(String, String, Map, long, HandoverCancellationToken, CompletionHandler)}.
+     */
+    public void invokeGrpc(@NonNull String engineId, @NonNull String service, @NonNull String method, @NonNull byte[] request, long timeoutInMs, @Nullable HandoverCancellationToken cancellationToken, @Nullable CompletionHandler<byte[]> completion) {
+        final CompletionHandler<byte[]> trackedCompletion = pendingHandovers.track(engineId, service + "/" + method, PendingHandover.Direction.TO_FLUTTER, timeoutInMs, cancellationToken, completion);
+        final EmbeddedEngine embeddedEngine = engines.get(engineId);
+        final BasicMessageChannel<ByteBuffer> grpcChannel = embeddedEngine != null ? embeddedEngine.grpcChannel : null;
+        if (grpcChannel == null || !embeddedEngine.channelReady || !embeddedEngine.grpcFramesReady) {
+            invokeGrpcHandover(engineId, service, method, request, trackedCompletion);
+            return;
+        }
+
+        final ByteBuffer frame = GrpcFrame.encodeRequest(nextGrpcCallId.incrementAndGet(), service, method, request);
+        Runner send = () -> grpcChannel.send(frame, reply -> {
+            if (reply == null) {
+                // The Dart side handles binary frames, so the call may have run already, sending it again could run it twice
+                trackedCompletion.onFailure(new Exception("gRPC call " + service + "/" + method + " got no reply"));
+                return;
+            }
+
+            final byte[] response;
+            try {
+                response = GrpcFrame.decodeResponse(reply);
+            } catch (Exception e) {
+                Log.e(TAG, "gRPC call " + service + "/" + method + " failed with " + e.getMessage());
+                trackedCompletion.onFailure(e);
+                return;
+            }
+            trackedCompletion.onSuccess(response);
+        });
+
+        if (UiThreadUtil.isOnUiThread()) {
+            send.run();
+        } else {
+            UiThreadUtil.runOnUiThread(send::run);
+        }
+    }
+
+    private void invokeGrpcHandover(@NonNull String engineId, @NonNull String service, @NonNull String method, @NonNull byte[] request, @NonNull CompletionHandler<byte[]> completion) {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("service", service);
+        data.put("method", method);
+        data.put("request", request);
+
+        // The completion is already tracked as pending
+        sendHandover(engineId, service, data, new CompletionHandler<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object response) {
+                if (response == null || response instanceof byte[]) {
+                    completion.onSuccess((byte[]) response);
+                } else {
+                    completion.onFailure(new Exception("Response of " + service + "/" + method + " is not a byte[]"));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                completion.onFailure(e);
+            }
+        });
+    }
+
+    private void onGrpcMessage(@NonNull EmbeddedEngine embeddedEngine, @Nullable ByteBuffer message, @NonNull BasicMessageChannel.Reply<ByteBuffer> reply) {
+        final GrpcFrame.Request request;
+        try {
+            request = GrpcFrame.decodeRequest(message);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Received an invalid gRPC frame", e);
+            reply.reply(GrpcFrame.encodeError("Invalid gRPC frame"));
+            return;
+        }
+
+        // A handler registered for the service gets the call like a handover of that name
+        final HandoverHandler handler = findHandoverHandler(request.service);
+        final HandoverResponderInterface handoverResponder = embeddedEngine.handoverResponder;
+        if (handler == null && (strictHandoverDispatch || handoverResponder == null)) {
+            Log.e(TAG, "No handler for gRPC service " + request.service);
+            reply.reply(GrpcFrame.encodeError("No handler for gRPC service " + request.service));
+            return;
+        }
+
+        recordFirstHandover(embeddedEngine);
+        Log.d(TAG, "received gRPC call " + request.callId + " " + request.service + "/" + request.method + " of " + request.payload.length + " bytes");
+        handoverLimiter.submit(embeddedEngine.id, request.service, defaultHandoverTimeout, new HandoverLimiter.Call() {
+            @Override
+            public void start(long timeoutInMs) {
+                startGrpcCall(embeddedEngine, request, handler, timeoutInMs, reply);
+            }
+
+            @Override
+            public void reject(@NonNull Exception e) {
+                Log.e(TAG, "Rejected gRPC call " + e.getMessage());
+                if (e instanceof RejectedExecutionException) {
+                    reply.reply(GrpcFrame.encodeError(GrpcFrame.STATUS_BACKPRESSURE, e.getMessage()));
+                } else if (e instanceof TimeoutException) {
+                    reply.reply(GrpcFrame.encodeError(ERROR_TIMEOUT + ": " + e.getMessage()));
+                } else {
+                    reply.reply(GrpcFrame.encodeError(e.getMessage()));
+                }
+            }
+        });
+    }
+
+    private void startGrpcCall(@NonNull EmbeddedEngine embeddedEngine, @NonNull GrpcFrame.Request request, @Nullable HandoverHandler handler,
+                               long timeoutInMs, @NonNull BasicMessageChannel.Reply<ByteBuffer> reply) {
+        final String name = request.service + "/" + request.method;
+        final CompletionHandler<Object> completion = new CompletionHandler<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object data) {
+                handoverLimiter.release(request.service);
+                if (data == null || data instanceof byte[]) {
+                    reply.reply(GrpcFrame.encodeResponse((byte[]) data));
+                } else {
+                    Log.e(TAG, "gRPC call " + request.service + "/" + request.method + " answered with a " + data.getClass().getName());
+                    reply.reply(GrpcFrame.encodeError("gRPC call " + request.service + "/" + request.method + " must be answered with a byte[], not a " + data.getClass().getName()));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                Log.e(TAG, "gRPC call " + request.service + "/" + request.method + " failed with " + e.getMessage());
+                handoverLimiter.release(request.service);
+                reply.reply(e instanceof TimeoutException
+                        ? GrpcFrame.encodeError(ERROR_TIMEOUT + ": " + e.getMessage())
+                        : GrpcFrame.encodeError(e.getMessage()));
+            }
+        };
+
+        final AccessTokenCache.Loader hostCall;
+        if (handler != null) {
+            final Map<String, Object> data = new HashMap<>();
+            data.put("name", request.service);
+            data.put("method", request.method);
+            data.put("data", request.payload);
+            hostCall = loaded -> handler.onHandover(request.service, data, loaded);
+        } else {
+            // The responder is looked up on every load, so a token refresh never reaches a stale one
+            hostCall = loaded -> {
+                final HandoverResponderInterface handoverResponder = embeddedEngine.handoverResponder;
+                if (handoverResponder == null) {
+                    loaded.onFailure(new Exception("Engine " + embeddedEngine.id + " has no handover responder"));
+                    return;
+                }
+                handoverResponder.invokeGrpc(request.service, request.method, request.payload, new CompletionHandler<byte[]>() {
+                    @Override
+                    public void onSuccess(@Nullable byte[] data) {
+                        loaded.onSuccess(data);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        loaded.onFailure(e);
+                    }
+                });
+            };
+        }
+
+        final AccessTokenCache tokenCache = getAccessTokenCache(embeddedEngine);
+        if (tokenCache != null && tokenCache.settings.handles(request.method)) {
+            tokenCache.get(AccessTokenCache.keyOf(name, request.payload), trackedLoader(embeddedEngine, name, timeoutInMs, hostCall),
+                    refreshLoader(embeddedEngine, request.service, name, hostCall), completion);
+        } else {
+            hostCall.load(pendingHandovers.track(embeddedEngine.id, name, PendingHandover.Direction.TO_HOST, timeoutInMs, null, completion));
+        }
+    }
+
     public void changeLanguage(@NonNull String language, @Nullable CompletionHandler<Boolean> completion) {
         final Map<String, Object> params = new HashMap<>();
         params.put("language", language);
@@ -302,9 +1844,13 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
     }
 
     public FlutterEmbeddingFlutterFragment getFragment(@NonNull FragmentActivity activity) {
+        return getFragment(activity, DEFAULT_ENGINE_ID);
+    }
+
+    public FlutterEmbeddingFlutterFragment getFragment(@NonNull FragmentActivity activity, @NonNull String engineId) {
         FragmentManager fragmentManager = activity.getSupportFragmentManager();
 
-        return (FlutterEmbeddingFlutterFragment) fragmentManager.findFragmentByTag(FlutterEmbedding.TAG_FLUTTER_FRAGMENT);
+        return (FlutterEmbeddingFlutterFragment) fragmentManager.findFragmentByTag(fragmentTag(engineId));
     }
 
 
@@ -321,6 +1867,10 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
     }
 
     public FlutterEmbeddingFlutterFragment getOrCreateFragment(@NonNull FragmentActivity activity, @NonNull Class<? extends FlutterEmbeddingFlutterFragment> subclass, Integer containerViewId) {
+        return getOrCreateFragment(activity, DEFAULT_ENGINE_ID, subclass, containerViewId);
+    }
+
+    public FlutterEmbeddingFlutterFragment getOrCreateFragment(@NonNull FragmentActivity activity, @NonNull String engineId, @NonNull Class<? extends FlutterEmbeddingFlutterFragment> subclass, Integer containerViewId) {
         FragmentManager fragmentManager = activity.getSupportFragmentManager();
 
         // Attempt to find an existing FlutterFragment,
@@ -328,11 +1878,11 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
 
         // Declare a local variable to reference the FlutterFragment so that you
         // can forward calls to it later.
-        FlutterEmbeddingFlutterFragment flutterFragment = getFragment(activity);
+        FlutterEmbeddingFlutterFragment flutterFragment = getFragment(activity, engineId);
 
         // Create and attach a FlutterFragment if one does not exist.
         if (flutterFragment == null) {
-            flutterFragment = new FlutterFragment.CachedEngineFragmentBuilder(subclass, FlutterEmbedding.ENGINE_ID)
+            flutterFragment = new FlutterFragment.CachedEngineFragmentBuilder(subclass, engineId)
                     .shouldAutomaticallyHandleOnBackPressed(false)
                     .build();
 
@@ -341,7 +1891,7 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
                     .add(
                             containerViewId != null ? containerViewId : 0,
                             flutterFragment,
-                            TAG_FLUTTER_FRAGMENT
+                            fragmentTag(engineId)
                     )
                     .commit();
         }
@@ -352,7 +1902,49 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
         return flutterFragment;
     }
 
+    public FlutterEmbeddingFlutterFragment getOrCreateFragmentOnFirstFrame(@NonNull FragmentActivity activity, @NonNull Class<? extends FlutterEmbeddingFlutterFragment> subclass, Integer containerViewId, long timeoutInMs, @Nullable CompletionHandler<FlutterEmbeddingFlutterFragment> completion) {
+        return getOrCreateFragmentOnFirstFrame(activity, DEFAULT_ENGINE_ID, subclass, containerViewId, timeoutInMs, completion);
+    }
+
+    /**
+     * Same as {@link #getOrCreateFragment}, but the fragment stays invisible until the engine
+     * rendered its first frame into it, so the user never sees an empty surface.
+     *
+     * @param timeoutInMs after this time the fragment is shown anyway and the completion fails, 0 waits forever
+     * @param completion  called on the UI thread when the fragment became visible
+     */
+    public FlutterEmbeddingFlutterFragment getOrCreateFragmentOnFirstFrame(@NonNull FragmentActivity activity, @NonNull String engineId, @NonNull Class<? extends FlutterEmbeddingFlutterFragment> subclass, Integer containerViewId, long timeoutInMs, @Nullable CompletionHandler<FlutterEmbeddingFlutterFragment> completion) {
+        final FlutterEmbeddingFlutterFragment flutterFragment = getOrCreateFragment(activity, engineId, subclass, containerViewId);
+        final View view = flutterFragment.getView();
+        final FlutterEngine engine = getEngine(engineId);
+
+        if (view == null || engine == null || engine.getRenderer().isDisplayingFlutterUi()) {
+            if (completion != null) {
+                completion.onSuccess(flutterFragment);
+            }
+            return flutterFragment;
+        }
+
+        // The view still has to be laid out and drawn for Flutter to render into it, so only hide it.
+        // A fragment that shows its last frame already has something to show.
+        if (!flutterFragment.isShowingLastFrame()) {
+            view.setAlpha(0f);
+        }
+
+        final FirstFrameReveal reveal = new FirstFrameReveal(engine, view, flutterFragment, completion);
+        engine.getRenderer().addIsFlutterUiDisplayedListener(reveal);
+        if (timeoutInMs > 0) {
+            UiThreadUtil.runOnUiThread(reveal, timeoutInMs);
+        }
+
+        return flutterFragment;
+    }
+
     public boolean hasFragment(@NonNull FragmentActivity activity) {
+        return hasFragment(activity, DEFAULT_ENGINE_ID);
+    }
+
+    public boolean hasFragment(@NonNull FragmentActivity activity, @NonNull String engineId) {
         // activity.getOnBackPressedDispatcher().addCallback();
 
         // Attempt to find an existing FlutterFragment,
@@ -360,15 +1952,19 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
 
         // Declare a local variable to reference the FlutterFragment so that you
         // can forward calls to it later.
-        FlutterFragment flutterFragment = getFragment(activity);
+        FlutterFragment flutterFragment = getFragment(activity, engineId);
 
         return flutterFragment != null;
     }
 
     public void clearFragment(@NonNull FragmentActivity activity) {
+        clearFragment(activity, DEFAULT_ENGINE_ID);
+    }
+
+    public void clearFragment(@NonNull FragmentActivity activity, @NonNull String engineId) {
         FragmentManager fragmentManager = activity.getSupportFragmentManager();
 
-        FlutterFragment flutterFragment = getFragment(activity);
+        FlutterFragment flutterFragment = getFragment(activity, engineId);
         if (flutterFragment != null) {
             Runner clearFragment = () -> {
                 fragmentManager.beginTransaction().remove(flutterFragment).commitNow();
@@ -382,4 +1978,64 @@ public class FlutterEmbedding implements MethodChannel.MethodCallHandler {
         }
     }
 
+    private static String fragmentTag(@NonNull String engineId) {
+        // Keep the original tag for the default engine so existing fragments are still found
+        return DEFAULT_ENGINE_ID.equals(engineId) ? TAG_FLUTTER_FRAGMENT : TAG_FLUTTER_FRAGMENT + "_" + engineId;
+    }
+
+
+    /**
+     * Makes a fragment visible again on the first frame of its engine, or when it runs as timeout.
+     * Only touched on the UI thread.
+     */
+    private static class FirstFrameReveal implements FlutterUiDisplayListener, Runnable {
+        private final FlutterEngine engine;
+        private final View view;
+        private final FlutterEmbeddingFlutterFragment fragment;
+        @Nullable
+        private final CompletionHandler<FlutterEmbeddingFlutterFragment> completion;
+        private boolean revealed = false;
+
+        FirstFrameReveal(FlutterEngine engine, View view, FlutterEmbeddingFlutterFragment fragment, @Nullable CompletionHandler<FlutterEmbeddingFlutterFragment> completion) {
+            this.engine = engine;
+            this.view = view;
+            this.fragment = fragment;
+            this.completion = completion;
+        }
+
+        @Override
+        public void onFlutterUiDisplayed() {
+            reveal(null);
+        }
+
+        @Override
+        public void onFlutterUiNoLongerDisplayed() {
+        }
+
+        @Override
+        public void run() {
+            reveal(new Exception("No first frame rendered before the timeout."));
+        }
+
+        private void reveal(@Nullable Exception error) {
+            if (revealed) {
+                return;
+            }
+            revealed = true;
+            engine.getRenderer().removeIsFlutterUiDisplayedListener(this);
+            // Drops the timeout, so it doesn't keep the fragment, view and engine alive until it fires
+            UiThreadUtil.cancelOnUiThread(this);
+            view.setAlpha(1f);
+
+            if (completion == null) {
+                return;
+            }
+            if (error == null) {
+                completion.onSuccess(fragment);
+            } else {
+                Log.d(TAG, error.getMessage());
+                completion.onFailure(error);
+            }
+        }
+    }
 }
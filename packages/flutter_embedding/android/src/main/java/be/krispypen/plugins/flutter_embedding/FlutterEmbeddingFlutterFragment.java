@@ -1,11 +1,17 @@
 package be.krispypen.plugins.flutter_embedding;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
 
 import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.FragmentActivity;
 
 import java.lang.ref.WeakReference;
@@ -28,6 +34,8 @@ public class FlutterEmbeddingFlutterFragment extends FlutterFragment {
 
     @Override
     public void onAttach(@NonNull Context context) {
+        // Keeps the engine alive while this fragment uses it, and restarts it when it was evicted
+        FlutterEmbedding.instance().attachSurface(getCachedEngineId());
         super.onAttach(context);
 
         requireActivity().getOnBackPressedDispatcher().addCallback(this, onBackPressedCallback);
@@ -60,6 +68,76 @@ public class FlutterEmbeddingFlutterFragment extends FlutterFragment {
 
     public static WeakReference<View> lastview;
 
+    /// Shows the last frame of a previous visit until Flutter painted, see {@link SnapshotMode}
+    @Nullable
+    private ImageView lastFramePlaceholder;
+
+    /// The view the placeholder goes in, while the last frame is being loaded
+    @Nullable
+    private FrameLayout lastFrameContainer;
+
+    private boolean flutterUiDisplayed;
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        final View flutterView = super.onCreateView(inflater, container, savedInstanceState);
+        final FlutterEmbedding flutterEmbedding = FlutterEmbedding.instance();
+        if (!flutterEmbedding.isCapturingLastFrames()) {
+            return flutterView;
+        }
+
+        final FrameLayout layout = new FrameLayout(inflater.getContext());
+        layout.addView(flutterView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        lastFrameContainer = layout;
+        flutterUiDisplayed = false;
+
+        // Frames on disk are decoded in the background, the placeholder only shows up when Flutter
+        // didn't paint in the meantime
+        flutterEmbedding.getLastFrame(inflater.getContext(), getCachedEngineId(), new CompletionHandler<Bitmap>() {
+            @Override
+            public void onSuccess(@Nullable Bitmap lastFrame) {
+                if (lastFrame == null || flutterUiDisplayed || lastFrameContainer != layout) {
+                    return;
+                }
+                lastFramePlaceholder = new ImageView(layout.getContext());
+                lastFramePlaceholder.setScaleType(ImageView.ScaleType.FIT_XY);
+                lastFramePlaceholder.setImageBitmap(lastFrame);
+                layout.addView(lastFramePlaceholder, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+            }
+        });
+
+        return layout;
+    }
+
+    /**
+     * @return true while the last frame of a previous visit is shown instead of Flutter
+     */
+    public boolean isShowingLastFrame() {
+        return lastFramePlaceholder != null;
+    }
+
+    @Override
+    public void onFlutterUiDisplayed() {
+        super.onFlutterUiDisplayed();
+        flutterUiDisplayed = true;
+        removeLastFramePlaceholder();
+    }
+
+    private void removeLastFramePlaceholder() {
+        if (lastFramePlaceholder == null) {
+            return;
+        }
+        final View view = getView();
+        if (view instanceof ViewGroup) {
+            ((ViewGroup) view).removeView(lastFramePlaceholder);
+        }
+        lastFramePlaceholder = null;
+    }
+
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
@@ -75,6 +153,7 @@ public class FlutterEmbeddingFlutterFragment extends FlutterFragment {
     @Override
     public void onDetach() {
         super.onDetach();
+        FlutterEmbedding.instance().detachSurface(getCachedEngineId());
     }
 
     @Override
@@ -94,6 +173,8 @@ public class FlutterEmbeddingFlutterFragment extends FlutterFragment {
 
     @Override
     public void onStop() {
+        // The surface is still there before the delegate stops
+        FlutterEmbedding.instance().captureLastFrame(requireContext(), getCachedEngineId());
         super.onStop();
     }
 
@@ -107,6 +188,8 @@ public class FlutterEmbeddingFlutterFragment extends FlutterFragment {
 
     @Override
     public void onDestroyView() {
+        lastFramePlaceholder = null;
+        lastFrameContainer = null;
         super.onDestroyView();
     }
 }
@@ -10,13 +10,19 @@ import io.flutter.plugin.common.MethodChannel;
  */
 public class FlutterEmbeddingPlugin implements FlutterPlugin {
 
+    /// Every engine of the pool has its own plugin instance, so this is the channel of that engine
+    private MethodChannel channel;
+
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
-        MethodChannel channel = FlutterEmbedding.instance().createChannel(flutterPluginBinding);
+        channel = FlutterEmbedding.instance().createChannel(flutterPluginBinding);
     }
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
-        FlutterEmbedding.instance().detachChannel();
+        if (channel != null) {
+            FlutterEmbedding.instance().detachChannel(channel);
+            channel = null;
+        }
     }
 }
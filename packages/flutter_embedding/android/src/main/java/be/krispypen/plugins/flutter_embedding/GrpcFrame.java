@@ -0,0 +1,125 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The frames sent on the binary gRPC channel, the protobuf payload follows a small header instead
+ * of being wrapped in a map.
+ * <p>
+ * IMPORTANT: keep this in sync with the Dart version in lib/flutter_embedding.dart
+ * <pre>
+ * request:  int32 call id | uint16 service length | service | uint16 method length | method | payload
+ * response: uint8 status  | payload, or the UTF-8 error message when the status is not STATUS_OK
+ * </pre>
+ * All numbers are big endian.
+ */
+final class GrpcFrame {
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    /// The host has too many handovers in flight to take the call, see {@link HandoverLimiter}
+    static final byte STATUS_BACKPRESSURE = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final class Request {
+        final int callId;
+        @NonNull
+        final String service;
+        @NonNull
+        final String method;
+        @NonNull
+        final byte[] payload;
+
+        Request(int callId, @NonNull String service, @NonNull String method, @NonNull byte[] payload) {
+            this.callId = callId;
+            this.service = service;
+            this.method = method;
+            this.payload = payload;
+        }
+    }
+
+    private GrpcFrame() {
+    }
+
+    /**
+     * The returned buffer is direct and positioned at its end, which is what the BinaryMessenger
+     * expects of messages and replies.
+     */
+    @NonNull
+    static ByteBuffer encodeRequest(int callId, @NonNull String service, @NonNull String method, @NonNull byte[] payload) {
+        final byte[] serviceBytes = service.getBytes(UTF_8);
+        final byte[] methodBytes = method.getBytes(UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(4 + 2 + serviceBytes.length + 2 + methodBytes.length + payload.length);
+        buffer.putInt(callId);
+        buffer.putShort((short) serviceBytes.length);
+        buffer.put(serviceBytes);
+        buffer.putShort((short) methodBytes.length);
+        buffer.put(methodBytes);
+        buffer.put(payload);
+        return buffer;
+    }
+
+    /**
+     * Copies everything out of the message, a direct message is only valid while it is handled.
+     */
+    @NonNull
+    static Request decodeRequest(@NonNull ByteBuffer message) {
+        final int callId = message.getInt();
+        final String service = readString(message);
+        final String method = readString(message);
+        final byte[] payload = new byte[message.remaining()];
+        message.get(payload);
+        return new Request(callId, service, method, payload);
+    }
+
+    @NonNull
+    static ByteBuffer encodeResponse(@Nullable byte[] payload) {
+        final int length = payload != null ? payload.length : 0;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1 + length);
+        buffer.put(STATUS_OK);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        return buffer;
+    }
+
+    @NonNull
+    static ByteBuffer encodeError(@Nullable String message) {
+        return encodeError(STATUS_ERROR, message);
+    }
+
+    @NonNull
+    static ByteBuffer encodeError(byte status, @Nullable String message) {
+        final byte[] messageBytes = (message != null ? message : "Unknown error").getBytes(UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1 + messageBytes.length);
+        buffer.put(status);
+        buffer.put(messageBytes);
+        return buffer;
+    }
+
+    /**
+     * @return the payload of a response frame
+     * @throws Exception with the error message of an error frame
+     */
+    @NonNull
+    static byte[] decodeResponse(@NonNull ByteBuffer reply) throws Exception {
+        final byte status = reply.get();
+        final byte[] payload = new byte[reply.remaining()];
+        reply.get(payload);
+        if (status != STATUS_OK) {
+            throw new Exception(new String(payload, UTF_8));
+        }
+        return payload;
+    }
+
+    @NonNull
+    private static String readString(@NonNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
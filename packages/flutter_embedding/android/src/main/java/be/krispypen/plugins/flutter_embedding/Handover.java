@@ -1,10 +1,16 @@
 package be.krispypen.plugins.flutter_embedding;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
 public enum Handover {
     provideAccessToken("provideAccessToken"),
     provideAnonymousAccessToken("provideAnonymousAccessToken"),
-    receiveAnalyticsEvent("receiveAnalyticsEvent"),
-    receiveDebugLog("receiveDebugLog"),
+    receiveAnalyticsEvent("receiveAnalyticsEvent", HandoverLane.BULK),
+    receiveDebugLog("receiveDebugLog", HandoverLane.BULK),
     receiveError("receiveError"),
     exit("exit"),
     startFaq("startFaq"),
@@ -15,15 +21,41 @@ public enum Handover {
     startTransactionSigning("startTransactionSigning"),
     ;
 
+    private static final Map<String, Handover> BY_EVENT_NAME = new HashMap<>();
+
+    static {
+        for (Handover handover : values()) {
+            BY_EVENT_NAME.put(handover.eventName, handover);
+        }
+    }
+
     private final String eventName;
+    private final HandoverLane lane;
 
     Handover(String eventName) {
+        this(eventName, HandoverLane.INTERACTIVE);
+    }
+
+    Handover(String eventName, HandoverLane lane) {
         this.eventName = eventName;
+        this.lane = lane;
     }
 
     public String getEventName() {
         return eventName;
     }
+
+    public HandoverLane getLane() {
+        return lane;
+    }
+
+    /**
+     * @return the handover with this event name, or null for custom handovers
+     */
+    @Nullable
+    public static Handover fromEventName(@NonNull String eventName) {
+        return BY_EVENT_NAME.get(eventName);
+    }
 }
 
 
@@ -0,0 +1,49 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cancels handovers that are still in flight, their completion fails with a
+ * {@link java.util.concurrent.CancellationException}. One token can be shared by several handovers.
+ */
+public final class HandoverCancellationToken {
+
+    private boolean cancelled = false;
+    private final List<Runnable> onCancel = new ArrayList<>();
+
+    public void cancel() {
+        final List<Runnable> callbacks;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            callbacks = new ArrayList<>(onCancel);
+            onCancel.clear();
+        }
+
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs the callback on cancel, or right away when the token is already cancelled.
+     */
+    void onCancel(@NonNull Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                onCancel.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+}
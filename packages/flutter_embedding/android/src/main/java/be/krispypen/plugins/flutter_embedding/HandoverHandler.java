@@ -0,0 +1,19 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Handles one kind of handover from Flutter, see {@link FlutterEmbedding#registerHandoverHandler}.
+ */
+public interface HandoverHandler {
+
+    /**
+     * @param name       the name of the handover, useful when one handler is registered for several
+     * @param data
+     * @param completion must be called exactly once, batched handovers ignore what it is called with
+     */
+    void onHandover(@NonNull String name, @Nullable Map<String, Object> data, @NonNull CompletionHandler<Object> completion);
+}
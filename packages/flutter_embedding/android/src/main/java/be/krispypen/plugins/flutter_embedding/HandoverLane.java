@@ -0,0 +1,13 @@
+package be.krispypen.plugins.flutter_embedding;
+
+/**
+ * The lane a handover from Flutter travels in, so bulk telemetry never delays interactive handovers.
+ * <p>
+ * IMPORTANT: keep the bulk handovers in sync with the Dart version in lib/flutter_embedding.dart
+ */
+public enum HandoverLane {
+    /// User facing and auth handovers, handled on the thread set by {@link HandoverThreadMode}
+    INTERACTIVE,
+    /// Telemetry like analytics events and debug logs, handled in order on their own background thread
+    BULK,
+}
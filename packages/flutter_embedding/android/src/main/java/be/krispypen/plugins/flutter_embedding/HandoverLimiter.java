@@ -0,0 +1,253 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many handovers from Flutter wait on the host at the same time, globally and per
+ * handover name, so a misbehaving screen can't pile up thousands of them.
+ * <p>
+ * The timeout of a handover starts when it is submitted, a queued handover that doesn't get room
+ * in time fails with a {@link TimeoutException} and the time it waited is taken off the timeout
+ * it gets once it starts.
+ */
+class HandoverLimiter {
+    private static final String TAG = "HandoverLimiter";
+
+    interface Call {
+        /// Passes the handover on to the host, it must call {@link #release} once it is answered.
+        /// The timeout is what is left after waiting in the queue, 0 is no timeout
+        void start(long timeoutInMs);
+
+        /// Fails the handover without passing it on, with a {@link RejectedExecutionException} when
+        /// there was no room for it, a {@link TimeoutException} when it waited too long for room or
+        /// the exception start threw
+        void reject(@NonNull Exception e);
+    }
+
+    private final class Waiting {
+        final String engineId;
+        final String name;
+        final Call call;
+        final long timeoutInMs;
+        final long submittedAtNanos = scheduler.elapsedRealtimeNanos();
+        @Nullable
+        Runnable deadline;
+
+        Waiting(String engineId, String name, Call call, long timeoutInMs) {
+            this.engineId = engineId;
+            this.name = name;
+            this.call = call;
+            this.timeoutInMs = timeoutInMs;
+        }
+
+        /// Stops the deadline and hands out the part of the timeout that is left
+        long stopWaiting() {
+            if (deadline != null) {
+                scheduler.cancelOnUiThread(deadline);
+            }
+            if (timeoutInMs <= 0) {
+                return 0;
+            }
+            return Math.max(1, timeoutInMs - (scheduler.elapsedRealtimeNanos() - submittedAtNanos) / 1_000_000);
+        }
+    }
+
+    @NonNull
+    private final Scheduler scheduler;
+
+    /// 0 is no limit
+    private int globalLimit = 0;
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    @NonNull
+    private BackpressurePolicy policy = BackpressurePolicy.REJECT;
+    private int maxQueued = 0;
+
+    private int inFlight = 0;
+    private final Map<String, Integer> inFlightByName = new HashMap<>();
+    private final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    HandoverLimiter() {
+        this(Scheduler.SYSTEM);
+    }
+
+    HandoverLimiter(@NonNull Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    synchronized void configure(int globalLimit, @NonNull BackpressurePolicy policy, int maxQueued) {
+        this.globalLimit = globalLimit;
+        this.policy = policy;
+        this.maxQueued = maxQueued;
+    }
+
+    void setLimit(@NonNull String name, int limit) {
+        if (limit > 0) {
+            limits.put(name, limit);
+        } else {
+            limits.remove(name);
+        }
+    }
+
+    /**
+     * Starts the call now, queues it or rejects it, depending on the limits and the policy.
+     *
+     * @param timeoutInMs how long the handover may take from now, including the time it waits for
+     *                    room, 0 is no timeout
+     */
+    void submit(@NonNull String engineId, @NonNull String name, long timeoutInMs, @NonNull Call call) {
+        Waiting queued = null;
+        Waiting dropped = null;
+        boolean start = false;
+        boolean reject = false;
+        synchronized (this) {
+            if (hasRoom(name)) {
+                acquire(name);
+                start = true;
+            } else if (policy == BackpressurePolicy.REJECT || maxQueued <= 0) {
+                reject = true;
+            } else if (queue.size() < maxQueued) {
+                queued = new Waiting(engineId, name, call, timeoutInMs);
+            } else if (policy == BackpressurePolicy.DROP_OLDEST) {
+                dropped = queue.poll();
+                queued = new Waiting(engineId, name, call, timeoutInMs);
+            } else {
+                reject = true;
+            }
+            if (queued != null) {
+                if (timeoutInMs > 0) {
+                    final Waiting waiting = queued;
+                    waiting.deadline = () -> expire(waiting);
+                }
+                queue.add(queued);
+            }
+        }
+
+        if (start) {
+            start(name, call, timeoutInMs);
+        } else if (reject) {
+            rejectedCount.incrementAndGet();
+            call.reject(new RejectedExecutionException("Too many handovers " + name + " in flight"));
+        }
+        if (queued != null && queued.deadline != null) {
+            scheduler.runOnUiThread(queued.deadline, timeoutInMs);
+        }
+        if (dropped != null) {
+            dropped.stopWaiting();
+            rejectedCount.incrementAndGet();
+            dropped.call.reject(new RejectedExecutionException("Handover " + dropped.name + " was dropped for a newer one"));
+        }
+    }
+
+    /**
+     * Frees the place of an answered call and starts the queued calls that fit now.
+     */
+    void release(@NonNull String name) {
+        final List<Waiting> started = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            final Integer count = inFlightByName.get(name);
+            if (count != null && count > 1) {
+                inFlightByName.put(name, count - 1);
+            } else {
+                inFlightByName.remove(name);
+            }
+
+            final Iterator<Waiting> iterator = queue.iterator();
+            while (iterator.hasNext() && (globalLimit <= 0 || inFlight < globalLimit)) {
+                final Waiting waiting = iterator.next();
+                if (hasRoom(waiting.name)) {
+                    iterator.remove();
+                    acquire(waiting.name);
+                    started.add(waiting);
+                }
+            }
+        }
+
+        for (Waiting waiting : started) {
+            start(waiting.name, waiting.call, waiting.stopWaiting());
+        }
+    }
+
+    /**
+     * A call that throws while starting never gets answered, so its place is freed right away.
+     */
+    private void start(@NonNull String name, @NonNull Call call, long timeoutInMs) {
+        try {
+            call.start(timeoutInMs);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to start handover " + name, e);
+            release(name);
+            call.reject(e);
+        }
+    }
+
+    /**
+     * Rejects every queued call of the engine.
+     */
+    void failAll(@NonNull String engineId, @NonNull Exception reason) {
+        final List<Waiting> failed = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Waiting> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                final Waiting waiting = iterator.next();
+                if (waiting.engineId.equals(engineId)) {
+                    iterator.remove();
+                    failed.add(waiting);
+                }
+            }
+        }
+
+        for (Waiting waiting : failed) {
+            waiting.stopWaiting();
+            waiting.call.reject(reason);
+        }
+    }
+
+    private void expire(@NonNull Waiting waiting) {
+        final boolean removed;
+        synchronized (this) {
+            removed = queue.remove(waiting);
+        }
+        if (removed) {
+            waiting.call.reject(new TimeoutException("Handover " + waiting.name + " got no room within " + waiting.timeoutInMs + "ms"));
+        }
+    }
+
+    synchronized int queuedCount() {
+        return queue.size();
+    }
+
+    long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private boolean hasRoom(@NonNull String name) {
+        if (globalLimit > 0 && inFlight >= globalLimit) {
+            return false;
+        }
+        final Integer limit = limits.get(name);
+        final Integer count = inFlightByName.get(name);
+        return limit == null || count == null || count < limit;
+    }
+
+    private void acquire(@NonNull String name) {
+        inFlight++;
+        final Integer count = inFlightByName.get(name);
+        inFlightByName.put(name, count == null ? 1 : count + 1);
+    }
+}
@@ -0,0 +1,121 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts, error counts, in-flight gauges and latency histograms per handover name and
+ * direction. Recording only allocates the first time a handover name is seen.
+ */
+class HandoverMetrics {
+
+    /// Bucket i counts latencies below 2^i microseconds, the last one everything above
+    static final int BUCKET_COUNT = 40;
+
+    /// What a recorder counted since the start or the last reset
+    static final class Counts {
+        final AtomicLong callCount = new AtomicLong();
+        final AtomicLong errorCount = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    /**
+     * Recorders are never removed, a reset swaps in new {@link Counts} instead, so a handover that
+     * is in flight during a reset still lands in the live recorder.
+     */
+    static final class Recorder {
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile Counts counts = new Counts();
+
+        void record(long elapsedNanos, boolean failed) {
+            inFlight.decrementAndGet();
+
+            final Counts counts = this.counts;
+            counts.callCount.incrementAndGet();
+            if (failed) {
+                counts.errorCount.incrementAndGet();
+            }
+            counts.totalNanos.addAndGet(elapsedNanos);
+
+            long max = counts.maxNanos.get();
+            while (elapsedNanos > max && !counts.maxNanos.compareAndSet(max, elapsedNanos)) {
+                max = counts.maxNanos.get();
+            }
+            counts.buckets.incrementAndGet(bucketOf(elapsedNanos));
+        }
+    }
+
+    private final Map<PendingHandover.Direction, ConcurrentHashMap<String, Recorder>> recorders = new EnumMap<>(PendingHandover.Direction.class);
+
+    HandoverMetrics() {
+        for (PendingHandover.Direction direction : PendingHandover.Direction.values()) {
+            recorders.put(direction, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @return the recorder of the handover, with the handover counted as in flight
+     */
+    @NonNull
+    Recorder started(@NonNull String name, @NonNull PendingHandover.Direction direction) {
+        final ConcurrentHashMap<String, Recorder> byName = recorders.get(direction);
+        Recorder recorder = byName.get(name);
+        if (recorder == null) {
+            // Not computeIfAbsent, that is only available from API 24
+            final Recorder created = new Recorder();
+            recorder = byName.putIfAbsent(name, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+        recorder.inFlight.incrementAndGet();
+        return recorder;
+    }
+
+    /**
+     * Records handovers that were handed over as a whole without a completion per handover, like a
+     * batch the responder handles at once. Their latency is the time it took to hand them over.
+     */
+    void recordDispatched(@NonNull String name, @NonNull PendingHandover.Direction direction, int count, long elapsedNanos) {
+        for (int i = 0; i < count; i++) {
+            started(name, direction).record(elapsedNanos, false);
+        }
+    }
+
+    @NonNull
+    List<HandoverMetricsSnapshot> snapshot() {
+        final List<HandoverMetricsSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<PendingHandover.Direction, ConcurrentHashMap<String, Recorder>> byDirection : recorders.entrySet()) {
+            for (Map.Entry<String, Recorder> entry : byDirection.getValue().entrySet()) {
+                snapshots.add(new HandoverMetricsSnapshot(entry.getKey(), byDirection.getKey(), entry.getValue()));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Starts counting from zero, the in-flight gauges are kept.
+     */
+    void reset() {
+        for (ConcurrentHashMap<String, Recorder> byName : recorders.values()) {
+            for (Recorder recorder : byName.values()) {
+                recorder.counts = new Counts();
+            }
+        }
+    }
+
+    static int bucketOf(long elapsedNanos) {
+        final long micros = elapsedNanos / 1_000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    }
+}
@@ -0,0 +1,122 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The metrics of one handover name in one direction at the time of
+ * {@link FlutterEmbedding#getHandoverMetrics()}.
+ * <p>
+ * Latencies are kept in a histogram with buckets that double in size, so percentiles are the upper
+ * bound of the bucket they fall in and at most 2x off.
+ */
+public final class HandoverMetricsSnapshot {
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final PendingHandover.Direction direction;
+    private final long callCount;
+    private final long errorCount;
+    private final int inFlight;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] buckets = new long[HandoverMetrics.BUCKET_COUNT];
+
+    HandoverMetricsSnapshot(@NonNull String name, @NonNull PendingHandover.Direction direction, @NonNull HandoverMetrics.Recorder recorder) {
+        this.name = name;
+        this.direction = direction;
+        final HandoverMetrics.Counts counts = recorder.counts;
+        this.callCount = counts.callCount.get();
+        this.errorCount = counts.errorCount.get();
+        this.inFlight = recorder.inFlight.get();
+        this.totalNanos = counts.totalNanos.get();
+        this.maxNanos = counts.maxNanos.get();
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = counts.buckets.get(i);
+        }
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @NonNull
+    public PendingHandover.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return how many handovers were answered, failed ones included
+     */
+    public long getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * @return how many handovers failed, expired or were cancelled
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getMeanLatencyNanos() {
+        return callCount == 0 ? 0 : totalNanos / callCount;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency below which that percentage of the handovers was answered, 0 without calls
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && buckets[i] > 0) {
+                return Math.min(getBucketUpperBoundNanos(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * @return the number of handovers per bucket, see {@link #getBucketUpperBoundNanos(int)}
+     */
+    @NonNull
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * @return the latency below which the handovers of the bucket were answered, the last bucket
+     * holds everything slower than the one before it
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket >= HandoverMetrics.BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) * 1_000;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "HandoverMetricsSnapshot{" + direction + " " + name + " calls=" + callCount + " errors=" + errorCount
+                + " inFlight=" + inFlight + " p50=" + getLatencyPercentileNanos(50) / 1_000 + "us"
+                + " p99=" + getLatencyPercentileNanos(99) / 1_000 + "us}";
+    }
+}
@@ -0,0 +1,203 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers host to Flutter handovers while the Flutter side of an engine isn't listening yet,
+ * during the engine boot or between stopEngine and the next start.
+ * <p>
+ * The outbox is opened when the Dart side of the embedding channel is ready, all queued
+ * handovers are then sent in the order they were invoked. Every send of an engine with an outbox
+ * is posted to the UI thread while holding the lock of the outbox, so a handover invoked on another
+ * thread while the outbox opens can't overtake the queued ones.
+ */
+class HandoverOutbox {
+
+    /**
+     * Sends a handover to Flutter, always called on the UI thread.
+     */
+    interface Sender {
+        void send(@NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion);
+    }
+
+    static class Message {
+        @NonNull
+        final String eventName;
+        @NonNull
+        final Map<String, Object> data;
+        @Nullable
+        final CompletionHandler<Object> completion;
+        final long expiresAt;
+
+        Message(@NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion, long expiresAt) {
+            this.eventName = eventName;
+            this.data = data;
+            this.completion = completion;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return true when the tracked handover was already failed, timed out or cancelled while it
+         * waited here, it must not be sent anymore
+         */
+        boolean isDone() {
+            return completion instanceof PendingHandoverTable.TrackedCompletion
+                    && ((PendingHandoverTable.TrackedCompletion<?>) completion).isDone();
+        }
+
+        void fail(@NonNull String reason) {
+            if (completion != null) {
+                completion.onFailure(new Exception("Handover " + eventName + " " + reason));
+            }
+        }
+    }
+
+    private final ArrayDeque<Message> messages = new ArrayDeque<>();
+    @NonNull
+    private final Sender sender;
+    private boolean open = false;
+
+    private int capacity;
+    @NonNull
+    private OutboxDropPolicy dropPolicy;
+    private long ttlInMs;
+
+    HandoverOutbox(@NonNull Sender sender, int capacity, @NonNull OutboxDropPolicy dropPolicy, long ttlInMs) {
+        this.sender = sender;
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.ttlInMs = ttlInMs;
+    }
+
+    synchronized void configure(int capacity, @NonNull OutboxDropPolicy dropPolicy, long ttlInMs) {
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.ttlInMs = ttlInMs;
+    }
+
+    /**
+     * Queues the handover when the outbox isn't open, else posts it to the UI thread to be sent
+     * after the handovers that were queued before.
+     */
+    void offer(@NonNull String eventName, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion) {
+        final List<Message> expired = new ArrayList<>();
+        Message dropped = null;
+        Message rejected = null;
+        synchronized (this) {
+            if (open) {
+                UiThreadUtil.runOnUiThread(() -> sender.send(eventName, data, completion));
+                return;
+            }
+
+            removeExpired(expired);
+            final long expiresAt = ttlInMs > 0 ? SystemClock.elapsedRealtime() + ttlInMs : Long.MAX_VALUE;
+            final Message message = new Message(eventName, data, completion, expiresAt);
+            if (messages.size() >= capacity) {
+                if (dropPolicy == OutboxDropPolicy.DROP_OLDEST && capacity > 0) {
+                    dropped = messages.pollFirst();
+                } else {
+                    rejected = message;
+                }
+            }
+            if (rejected == null) {
+                messages.addLast(message);
+            }
+        }
+
+        for (Message message : expired) {
+            message.fail("expired before the Flutter engine was listening.");
+        }
+        if (dropped != null) {
+            dropped.fail("was dropped because the outbox is full.");
+        }
+        if (rejected != null) {
+            rejected.fail("was rejected because the outbox is full.");
+        }
+        if (rejected == null && ttlInMs > 0) {
+            UiThreadUtil.runOnUiThread(this::failExpired, ttlInMs);
+        }
+    }
+
+    /**
+     * Opens the outbox, from now on handovers are no longer queued. The queued handovers that
+     * didn't expire and weren't failed, timed out or cancelled meanwhile are posted to the UI thread
+     * to be sent, in the order they were invoked.
+     *
+     * @return the number of handovers that are sent
+     */
+    int open() {
+        final List<Message> expired = new ArrayList<>();
+        final int sent;
+        synchronized (this) {
+            open = true;
+            removeExpired(expired);
+            sent = messages.size();
+            for (Message message : messages) {
+                UiThreadUtil.runOnUiThread(() -> sender.send(message.eventName, message.data, message.completion));
+            }
+            messages.clear();
+        }
+
+        for (Message message : expired) {
+            message.fail("expired before the Flutter engine was listening.");
+        }
+        return sent;
+    }
+
+    /**
+     * Closes the outbox, new handovers are queued until it is opened again.
+     */
+    synchronized void close() {
+        open = false;
+    }
+
+    /**
+     * Fails all queued handovers, used when the outbox is disabled.
+     */
+    void clear() {
+        final List<Message> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(messages);
+            messages.clear();
+        }
+
+        for (Message message : pending) {
+            message.fail("was dropped because the outbox was disabled.");
+        }
+    }
+
+    private void failExpired() {
+        final List<Message> expired = new ArrayList<>();
+        synchronized (this) {
+            removeExpired(expired);
+        }
+
+        for (Message message : expired) {
+            message.fail("expired before the Flutter engine was listening.");
+        }
+    }
+
+    private void removeExpired(@NonNull List<Message> expired) {
+        final long now = SystemClock.elapsedRealtime();
+        final Iterator<Message> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            final Message message = iterator.next();
+            if (message.isDone()) {
+                // Its completion already got its answer, it only holds a place
+                iterator.remove();
+            } else if (message.expiresAt <= now) {
+                expired.add(message);
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package be.krispypen.plugins.flutter_embedding;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -21,5 +24,68 @@ public interface HandoverResponderInterface {
      */
     void invokeHandover(@NonNull String name, @NonNull Map<String, Object> data, @Nullable CompletionHandler<Object> completion);
 
-    
+    /**
+     * This will be used to deliver a batch of fire-and-forget handover events, like analytics events
+     * or debug logs, in the order Flutter sent them. There is nothing to respond.
+     * <p>
+     * By default every event goes through {@link #invokeHandover} without completion, override it to
+     * handle the batch at once.
+     *
+     * @param name
+     * @param batch
+     */
+    default void invokeHandoverBatch(@NonNull String name, @NonNull List<Map<String, Object>> batch) {
+        for (Map<String, Object> data : batch) {
+            invokeHandover(name, data, null);
+        }
+    }
+
+    /**
+     * This will be used to invoke a gRPC call from Flutter on the native app, the request and the
+     * response are the serialized protobuf messages.
+     * <p>
+     * By default this goes through {@link #invokeHandover} with the request wrapped in a map, override
+     * it to skip the map.
+     *
+     * @param service
+     * @param method
+     * @param request
+     * @param completion
+     */
+    default void invokeGrpc(@NonNull String service, @NonNull String method, @NonNull byte[] request, @Nullable CompletionHandler<byte[]> completion) {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("name", service);
+        data.put("method", method);
+        data.put("data", request);
+
+        invokeHandover(service, data, new CompletionHandler<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object response) {
+                if (completion == null) {
+                    return;
+                }
+                if (response == null || response instanceof byte[]) {
+                    completion.onSuccess((byte[]) response);
+                } else {
+                    completion.onFailure(new Exception("Response of " + service + "/" + method + " is not a byte[]"));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                if (completion != null) {
+                    completion.onFailure(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Tells on which thread {@link #invokeHandover} will be called, before the first handover of an
+     * engine arrives. Responders that are not thread safe should check this.
+     *
+     * @param threadMode
+     */
+    default void onHandoverThreadMode(@NonNull HandoverThreadMode threadMode) {
+    }
 }
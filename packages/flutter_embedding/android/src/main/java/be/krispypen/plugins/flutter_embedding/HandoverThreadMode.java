@@ -0,0 +1,14 @@
+package be.krispypen.plugins.flutter_embedding;
+
+/**
+ * The thread on which {@link HandoverResponderInterface#invokeHandover} is called for handovers
+ * coming from Flutter.
+ */
+public enum HandoverThreadMode {
+    /// The Android main thread (default)
+    MAIN,
+    /// One background thread at a time, handovers are handled in the order they are sent
+    BACKGROUND_SERIAL,
+    /// Any number of background threads, handovers can be handled out of order
+    BACKGROUND_CONCURRENT,
+}
@@ -0,0 +1,122 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the last rendered frame of every engine, so a fragment that recreates its view can show it
+ * until Flutter paints again.
+ */
+class LastFrameSnapshots {
+    private static final String TAG = "LastFrameSnapshots";
+    private static final String DIRECTORY = "flutter_embedding_snapshots";
+    /// Disk snapshots are stored at 1/DISK_SAMPLE_SIZE of the width and height
+    private static final int DISK_SAMPLE_SIZE = 2;
+    private static final int DISK_QUALITY = 80;
+
+    private final LruCache<String, Bitmap> memory = new LruCache<String, Bitmap>((int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE)) {
+        @Override
+        protected int sizeOf(String engineId, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    /// Compressing, decoding and deleting files never happens on the UI thread
+    private final Executor diskExecutor = Executors.newSingleThreadExecutor();
+
+    void put(@NonNull Context context, @NonNull SnapshotMode mode, @NonNull String engineId, @NonNull Bitmap bitmap) {
+        switch (mode) {
+            case MEMORY:
+                memory.put(engineId, bitmap);
+                break;
+            case DISK:
+                final File file = file(context, engineId);
+                diskExecutor.execute(() -> write(file, bitmap));
+                break;
+            case OFF:
+                break;
+        }
+    }
+
+    /**
+     * Passes the snapshot of the engine, or null when there is none, to the completion. Snapshots
+     * in memory are passed right away, snapshots on disk on the UI thread once they are decoded.
+     */
+    void get(@NonNull Context context, @NonNull SnapshotMode mode, @NonNull String engineId, @NonNull CompletionHandler<Bitmap> completion) {
+        switch (mode) {
+            case MEMORY:
+                completion.onSuccess(memory.get(engineId));
+                break;
+            case DISK:
+                final File file = file(context, engineId);
+                diskExecutor.execute(() -> {
+                    final Bitmap bitmap = file.exists() ? BitmapFactory.decodeFile(file.getPath()) : null;
+                    UiThreadUtil.runOnUiThread(() -> completion.onSuccess(bitmap));
+                });
+                break;
+            default:
+                completion.onSuccess(null);
+                break;
+        }
+    }
+
+    void remove(@NonNull Context context, @NonNull String engineId) {
+        memory.remove(engineId);
+        final File file = file(context, engineId);
+        diskExecutor.execute(file::delete);
+    }
+
+    void trimMemory() {
+        memory.evictAll();
+    }
+
+    private static void write(@NonNull File file, @NonNull Bitmap bitmap) {
+        final int width = Math.max(1, bitmap.getWidth() / DISK_SAMPLE_SIZE);
+        final int height = Math.max(1, bitmap.getHeight() / DISK_SAMPLE_SIZE);
+        final Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Failed to create " + directory);
+            return;
+        }
+
+        // Written next to it and renamed, so a crash halfway never leaves a truncated snapshot
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            scaled.compress(Bitmap.CompressFormat.JPEG, DISK_QUALITY, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write snapshot " + file, e);
+            temporary.delete();
+            return;
+        } finally {
+            bitmap.recycle();
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
+
+        if (!temporary.renameTo(file)) {
+            Log.e(TAG, "Failed to move snapshot to " + file);
+            temporary.delete();
+        }
+    }
+
+    @NonNull
+    private static File file(@NonNull Context context, @NonNull String engineId) {
+        return new File(new File(context.getCacheDir(), DIRECTORY), engineId + ".jpg");
+    }
+}
@@ -0,0 +1,11 @@
+package be.krispypen.plugins.flutter_embedding;
+
+/**
+ * What the handover outbox does with a new handover when it is full.
+ */
+public enum OutboxDropPolicy {
+    /// The new handover fails right away, the queued ones are kept
+    REJECT_NEW,
+    /// The oldest queued handover fails to make room for the new one
+    DROP_OLDEST,
+}
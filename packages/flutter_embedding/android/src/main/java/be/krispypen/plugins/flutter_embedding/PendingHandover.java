@@ -0,0 +1,83 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handover that is waiting for the other side to answer, see
+ * {@link FlutterEmbedding#getPendingHandovers()}.
+ */
+public final class PendingHandover {
+
+    public enum Direction {
+        /// Invoked by the host, waiting for Flutter
+        TO_FLUTTER,
+        /// Invoked by Flutter, waiting for the host
+        TO_HOST,
+    }
+
+    private final long id;
+    @NonNull
+    private final String engineId;
+    @NonNull
+    private final String name;
+    @NonNull
+    private final Direction direction;
+    private final long startedNanos;
+
+    /// Failed when the handover expires, is cancelled or its engine stops
+    @Nullable
+    final CompletionHandler<?> completion;
+    @Nullable
+    Runnable deadline;
+    /// Records the latency and outcome once the handover is done
+    @Nullable
+    HandoverMetrics.Recorder recorder;
+    final AtomicBoolean done = new AtomicBoolean(false);
+
+    PendingHandover(long id, @NonNull String engineId, @NonNull String name, @NonNull Direction direction, @Nullable CompletionHandler<?> completion) {
+        this.id = id;
+        this.engineId = engineId;
+        this.name = name;
+        this.direction = direction;
+        this.startedNanos = SystemClock.elapsedRealtimeNanos();
+        this.completion = completion;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getEngineId() {
+        return engineId;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @NonNull
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return when the handover was invoked, see SystemClock#elapsedRealtimeNanos
+     */
+    public long getStartedNanos() {
+        return startedNanos;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PendingHandover{" + id + " " + direction + " " + engineId + "/" + name
+                + " for " + (SystemClock.elapsedRealtimeNanos() - startedNanos) / 1_000_000 + "ms}";
+    }
+}
@@ -0,0 +1,150 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every handover in flight until it is answered, expires, is cancelled or its engine stops,
+ * so completions never leak when the other side doesn't answer.
+ */
+class PendingHandoverTable {
+
+    /**
+     * The completion {@link #track} hands out, it knows when its handover is over, so whoever still
+     * holds on to it can skip the work.
+     */
+    final class TrackedCompletion<T> implements CompletionHandler<T> {
+        private final PendingHandover handover;
+        @Nullable
+        private final CompletionHandler<T> completion;
+
+        TrackedCompletion(@NonNull PendingHandover handover, @Nullable CompletionHandler<T> completion) {
+            this.handover = handover;
+            this.completion = completion;
+        }
+
+        /**
+         * @return true when the handover was answered, expired, cancelled or failed with its engine
+         */
+        boolean isDone() {
+            return handover.done.get();
+        }
+
+        @Override
+        public void onSuccess(@Nullable T data) {
+            if (finish(handover, false) && completion != null) {
+                completion.onSuccess(data);
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            if (finish(handover, true) && completion != null) {
+                completion.onFailure(e);
+            }
+        }
+    }
+
+    private final Map<Long, PendingHandover> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final HandoverMetrics metrics = new HandoverMetrics();
+
+    /**
+     * Registers a handover in flight.
+     *
+     * @param timeoutInMs fails the handover when it isn't answered in time, 0 waits forever
+     * @return the completion to hand to the other side, only the first call to it is passed on
+     */
+    @NonNull
+    <T> CompletionHandler<T> track(@NonNull String engineId, @NonNull String name, @NonNull PendingHandover.Direction direction,
+                                   long timeoutInMs, @Nullable HandoverCancellationToken cancellationToken, @Nullable CompletionHandler<T> completion) {
+        final PendingHandover handover = new PendingHandover(nextId.incrementAndGet(), engineId, name, direction, completion);
+        handover.recorder = metrics.started(name, direction);
+        pending.put(handover.getId(), handover);
+
+        if (timeoutInMs > 0) {
+            handover.deadline = () -> {
+                if (finish(handover, true)) {
+                    expiredCount.incrementAndGet();
+                    fail(handover, new TimeoutException("Handover " + name + " was not answered within " + timeoutInMs + "ms"));
+                }
+            };
+            UiThreadUtil.runOnUiThread(handover.deadline, timeoutInMs);
+        }
+        if (cancellationToken != null) {
+            cancellationToken.onCancel(() -> {
+                if (finish(handover, true)) {
+                    cancelledCount.incrementAndGet();
+                    fail(handover, new CancellationException("Handover " + name + " was cancelled"));
+                }
+            });
+        }
+
+        return new TrackedCompletion<>(handover, completion);
+    }
+
+    /**
+     * Fails every handover of the engine that is still in flight.
+     */
+    void failAll(@NonNull String engineId, @NonNull Exception reason) {
+        for (PendingHandover handover : pending.values()) {
+            if (handover.getEngineId().equals(engineId) && finish(handover, true)) {
+                fail(handover, reason);
+            }
+        }
+    }
+
+    @NonNull
+    List<PendingHandover> snapshot() {
+        return new ArrayList<>(pending.values());
+    }
+
+    int inFlightCount() {
+        return pending.size();
+    }
+
+    long expiredCount() {
+        return expiredCount.get();
+    }
+
+    long cancelledCount() {
+        return cancelledCount.get();
+    }
+
+    @NonNull
+    HandoverMetrics metrics() {
+        return metrics;
+    }
+
+    private boolean finish(@NonNull PendingHandover handover, boolean failed) {
+        if (!handover.done.compareAndSet(false, true)) {
+            return false;
+        }
+        pending.remove(handover.getId());
+        if (handover.recorder != null) {
+            handover.recorder.record(SystemClock.elapsedRealtimeNanos() - handover.getStartedNanos(), failed);
+        }
+        if (handover.deadline != null) {
+            UiThreadUtil.cancelOnUiThread(handover.deadline);
+        }
+        return true;
+    }
+
+    private static void fail(@NonNull PendingHandover handover, @NonNull Exception reason) {
+        if (handover.completion != null) {
+            handover.completion.onFailure(reason);
+        }
+    }
+}
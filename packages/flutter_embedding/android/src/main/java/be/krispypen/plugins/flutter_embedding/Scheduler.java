@@ -0,0 +1,39 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The clock and the UI thread queue the handover bookkeeping runs on, tests replace it with one
+ * they advance by hand.
+ */
+interface Scheduler {
+
+    /// SystemClock and the main looper
+    Scheduler SYSTEM = new Scheduler() {
+        @Override
+        public long elapsedRealtimeNanos() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void runOnUiThread(@NonNull Runnable runnable, long delayInMs) {
+            UiThreadUtil.runOnUiThread(runnable, delayInMs);
+        }
+
+        @Override
+        public void cancelOnUiThread(@NonNull Runnable runnable) {
+            UiThreadUtil.cancelOnUiThread(runnable);
+        }
+    };
+
+    /**
+     * @return the monotonic time, like SystemClock#elapsedRealtimeNanos
+     */
+    long elapsedRealtimeNanos();
+
+    void runOnUiThread(@NonNull Runnable runnable, long delayInMs);
+
+    void cancelOnUiThread(@NonNull Runnable runnable);
+}
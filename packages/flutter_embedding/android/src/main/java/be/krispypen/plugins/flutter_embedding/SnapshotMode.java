@@ -0,0 +1,13 @@
+package be.krispypen.plugins.flutter_embedding;
+
+/**
+ * Where the last frame of an embedded screen is kept to show as placeholder when it comes back.
+ */
+public enum SnapshotMode {
+    /// No snapshots are taken (default)
+    OFF,
+    /// Full size snapshots in a memory cache, cleared when the system is low on memory
+    MEMORY,
+    /// Downsampled snapshots in the cache dir, slower to show but they don't use heap
+    DISK,
+}
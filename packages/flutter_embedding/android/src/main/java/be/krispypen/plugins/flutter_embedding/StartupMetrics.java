@@ -0,0 +1,112 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Timestamps of the phases of an engine boot, recorded by {@link FlutterEmbedding#startEngine}.
+ * <p>
+ * All timestamps are monotonic (SystemClock#elapsedRealtimeNanos), so only the difference between
+ * two of them is meaningful. A phase that wasn't reached (yet) is {@link #NOT_REACHED}.
+ */
+public final class StartupMetrics {
+
+    public static final long NOT_REACHED = -1;
+
+    @NonNull
+    private final String engineId;
+
+    volatile long startRequestedNanos = NOT_REACHED;
+    volatile long loaderInitializationStartNanos = NOT_REACHED;
+    volatile long loaderInitializationEndNanos = NOT_REACHED;
+    volatile long engineCreatedNanos = NOT_REACHED;
+    volatile long dartEntrypointExecutedNanos = NOT_REACHED;
+    volatile long firstHandoverNanos = NOT_REACHED;
+    volatile long firstFrameNanos = NOT_REACHED;
+
+    StartupMetrics(@NonNull String engineId) {
+        this.engineId = engineId;
+    }
+
+    @NonNull
+    public String getEngineId() {
+        return engineId;
+    }
+
+    /**
+     * @return when startEngine was called
+     */
+    public long getStartRequestedNanos() {
+        return startRequestedNanos;
+    }
+
+    /**
+     * @return when the FlutterLoader initialization started, equal to the end when it was already initialized
+     */
+    public long getLoaderInitializationStartNanos() {
+        return loaderInitializationStartNanos;
+    }
+
+    public long getLoaderInitializationEndNanos() {
+        return loaderInitializationEndNanos;
+    }
+
+    /**
+     * @return when the FlutterEngine was constructed. Engines spawned by startEngine are constructed
+     * and run their Dart entrypoint in one call, so for them this equals
+     * {@link #getDartEntrypointExecutedNanos()}
+     */
+    public long getEngineCreatedNanos() {
+        return engineCreatedNanos;
+    }
+
+    /**
+     * @return when the Dart entrypoint was started
+     */
+    public long getDartEntrypointExecutedNanos() {
+        return dartEntrypointExecutedNanos;
+    }
+
+    /**
+     * @return when the first handover was received on the embedding channel
+     */
+    public long getFirstHandoverNanos() {
+        return firstHandoverNanos;
+    }
+
+    /**
+     * @return when the first frame was rendered
+     */
+    public long getFirstFrameNanos() {
+        return firstFrameNanos;
+    }
+
+    /**
+     * @return the time between two phases, or {@link #NOT_REACHED} when one of them wasn't reached
+     */
+    public static long durationNanos(long fromNanos, long toNanos) {
+        if (fromNanos == NOT_REACHED || toNanos == NOT_REACHED) {
+            return NOT_REACHED;
+        }
+        return toNanos - fromNanos;
+    }
+
+    /**
+     * @return the time from startEngine until the first rendered frame
+     */
+    public long getTotalDurationNanos() {
+        return durationNanos(startRequestedNanos, firstFrameNanos);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "StartupMetrics{" +
+                "engineId='" + engineId + '\'' +
+                ", loaderInitialization=" + durationNanos(loaderInitializationStartNanos, loaderInitializationEndNanos) +
+                ", engineCreation=" + durationNanos(loaderInitializationEndNanos, engineCreatedNanos) +
+                ", dartEntrypoint=" + durationNanos(engineCreatedNanos, dartEntrypointExecutedNanos) +
+                ", firstHandover=" + durationNanos(startRequestedNanos, firstHandoverNanos) +
+                ", firstFrame=" + durationNanos(startRequestedNanos, firstFrameNanos) +
+                '}';
+    }
+}
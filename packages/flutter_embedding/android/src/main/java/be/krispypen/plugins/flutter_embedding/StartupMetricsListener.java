@@ -0,0 +1,16 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+public interface StartupMetricsListener {
+
+    /**
+     * Called on the UI thread when an engine rendered its first frame.
+     * <p>
+     * The first handover can still be missing at that moment, {@link FlutterEmbedding#getStartupMetrics}
+     * returns the same object which is updated when it arrives.
+     *
+     * @param metrics the timestamps of the phases of the engine boot
+     */
+    void onStartupMetrics(@NonNull StartupMetrics metrics);
+}
@@ -18,6 +18,18 @@ class UiThreadUtil {
         return Looper.getMainLooper().getThread() == Thread.currentThread();
     }
 
+    /**
+     * @return a {@code Handler} for the UI thread.
+     */
+    public static Handler getMainHandler() {
+        synchronized (UiThreadUtil.class) {
+            if (sMainHandler == null) {
+                sMainHandler = new Handler(Looper.getMainLooper());
+            }
+        }
+        return sMainHandler;
+    }
+
     /**
      * Runs the given {@code Runnable} on the UI thread.
      */
@@ -29,11 +41,13 @@ class UiThreadUtil {
      * Runs the given {@code Runnable} on the UI thread with the specified delay.
      */
     public static void runOnUiThread(Runnable runnable, long delayInMs) {
-        synchronized (UiThreadUtil.class) {
-            if (sMainHandler == null) {
-                sMainHandler = new Handler(Looper.getMainLooper());
-            }
-        }
-        sMainHandler.postDelayed(runnable, delayInMs);
+        getMainHandler().postDelayed(runnable, delayInMs);
+    }
+
+    /**
+     * Removes the given {@code Runnable} if it is still waiting to run on the UI thread.
+     */
+    public static void cancelOnUiThread(Runnable runnable) {
+        getMainHandler().removeCallbacks(runnable);
     }
 }
@@ -0,0 +1,173 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AccessTokenCacheTest {
+
+    private static final String KEY = "provideAccessToken";
+
+    /// Keeps the completions of the host calls, so the test decides when and how they are answered
+    private static class HostCalls implements AccessTokenCache.Loader {
+        final List<CompletionHandler<Object>> calls = new ArrayList<>();
+
+        @Override
+        public void load(@NonNull CompletionHandler<Object> completion) {
+            calls.add(completion);
+        }
+    }
+
+    private static class Answer implements CompletionHandler<Object> {
+        Object value;
+        Exception error;
+        int answers = 0;
+
+        @Override
+        public void onSuccess(@Nullable Object data) {
+            value = data;
+            answers++;
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            error = e;
+            answers++;
+        }
+    }
+
+    private FakeScheduler scheduler;
+    private HostCalls loader;
+    private HostCalls refresher;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        loader = new HostCalls();
+        refresher = new HostCalls();
+    }
+
+    private AccessTokenCache cache(long defaultTtlInMs, long refreshBeforeExpiryInMs) {
+        return new AccessTokenCache(new AccessTokenCache.Settings(Collections.singleton(KEY), defaultTtlInMs, refreshBeforeExpiryInMs), null, scheduler);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneHostCall() {
+        final AccessTokenCache cache = cache(60_000, 0);
+        final Answer first = new Answer();
+        final Answer second = new Answer();
+
+        cache.get(KEY, loader, refresher, first);
+        cache.get(KEY, loader, refresher, second);
+        assertEquals(1, loader.calls.size());
+
+        loader.calls.get(0).onSuccess("token");
+        assertEquals("token", first.value);
+        assertEquals("token", second.value);
+    }
+
+    @Test
+    public void answersFromTheCacheUntilTheTokenExpires() {
+        final AccessTokenCache cache = cache(60_000, 0);
+        cache.get(KEY, loader, refresher, new Answer());
+        loader.calls.get(0).onSuccess("token");
+
+        final Answer cached = new Answer();
+        cache.get(KEY, loader, refresher, cached);
+        assertEquals("token", cached.value);
+        assertEquals(1, loader.calls.size());
+
+        scheduler.advance(60_000);
+        cache.get(KEY, loader, refresher, new Answer());
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    public void failedHostCallIsNotCachedAndFailsEveryWaitingRequest() {
+        final AccessTokenCache cache = cache(60_000, 0);
+        final Answer first = new Answer();
+        final Answer second = new Answer();
+        cache.get(KEY, loader, refresher, first);
+        cache.get(KEY, loader, refresher, second);
+
+        final TimeoutException timeout = new TimeoutException("no answer");
+        loader.calls.get(0).onFailure(timeout);
+        assertSame(timeout, first.error);
+        assertSame(timeout, second.error);
+
+        // The failed call left, so the next request asks the host again
+        cache.get(KEY, loader, refresher, new Answer());
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    public void invalidateForgetsTokensAndDoesNotCacheCallsInFlight() {
+        final AccessTokenCache cache = cache(60_000, 0);
+        cache.get(KEY, loader, refresher, new Answer());
+        loader.calls.get(0).onSuccess("old");
+
+        cache.invalidate();
+        final Answer afterInvalidate = new Answer();
+        cache.get(KEY, loader, refresher, afterInvalidate);
+        assertNull(afterInvalidate.value);
+        assertEquals(2, loader.calls.size());
+
+        cache.invalidate();
+        loader.calls.get(1).onSuccess("loaded before the invalidate");
+        // The waiting request still gets its answer, but the token is not cached
+        assertEquals("loaded before the invalidate", afterInvalidate.value);
+        cache.get(KEY, loader, refresher, new Answer());
+        assertEquals(3, loader.calls.size());
+    }
+
+    @Test
+    public void refreshesUsedTokensBeforeTheyExpire() {
+        final AccessTokenCache cache = cache(10_000, 2_000);
+        cache.get(KEY, loader, refresher, new Answer());
+        loader.calls.get(0).onSuccess("token");
+        cache.get(KEY, loader, refresher, new Answer());
+
+        scheduler.advance(8_000);
+        assertEquals(1, refresher.calls.size());
+        refresher.calls.get(0).onSuccess("refreshed");
+
+        final Answer afterRefresh = new Answer();
+        cache.get(KEY, loader, refresher, afterRefresh);
+        assertEquals("refreshed", afterRefresh.value);
+        assertEquals(1, loader.calls.size());
+    }
+
+    @Test
+    public void leavesUnusedTokensToExpire() {
+        final AccessTokenCache cache = cache(10_000, 2_000);
+        cache.get(KEY, loader, refresher, new Answer());
+        loader.calls.get(0).onSuccess("token");
+
+        scheduler.advance(8_000);
+        assertTrue(refresher.calls.isEmpty());
+    }
+
+    @Test
+    public void invalidateStopsScheduledRefreshes() {
+        final AccessTokenCache cache = cache(10_000, 2_000);
+        cache.get(KEY, loader, refresher, new Answer());
+        loader.calls.get(0).onSuccess("token");
+        cache.get(KEY, loader, refresher, new Answer());
+
+        cache.invalidate();
+        scheduler.advance(8_000);
+        assertTrue(refresher.calls.isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ChunkedTransfersTest {
+
+    private FakeScheduler scheduler;
+    private ChunkedTransfers receiver;
+    private final AtomicInteger nextTransferId = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        receiver = new ChunkedTransfers(scheduler);
+    }
+
+    private static byte[] bytes(int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    /// Hands every chunk to the receiver, like the other side of the channel does
+    private int sendChunks(ChunkedTransfers.Outgoing outgoing) {
+        int chunks = 0;
+        Map<String, Object> chunk;
+        while ((chunk = outgoing.nextChunk()) != null) {
+            receiver.append(chunk);
+            chunks++;
+        }
+        return chunks;
+    }
+
+    @Test
+    public void smallValuesAreNotSplit() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("request", bytes(4));
+        data.put("name", "small");
+        assertNull(ChunkedTransfers.split(data, 4, nextTransferId));
+    }
+
+    @Test
+    public void reassemblesLargeValues() {
+        final byte[] large = bytes(10);
+        final Map<String, Object> data = new HashMap<>();
+        data.put("request", large);
+        data.put("name", "large");
+
+        final ChunkedTransfers.Outgoing outgoing = ChunkedTransfers.split(data, 4, nextTransferId);
+        assertNotNull(outgoing);
+        assertEquals(3, sendChunks(outgoing));
+
+        final Map<String, Object> resolved = receiver.resolve(outgoing.message);
+        assertArrayEquals(large, (byte[]) resolved.get("request"));
+        assertEquals("large", resolved.get("name"));
+    }
+
+    @Test
+    public void handoverWithoutMarkersIsPassedOn() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("name", "plain");
+        assertSame(data, receiver.resolve(data));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingChunksFailTheHandover() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("request", bytes(10));
+        final ChunkedTransfers.Outgoing outgoing = ChunkedTransfers.split(data, 4, nextTransferId);
+
+        // The chunks never arrive
+        receiver.resolve(outgoing.message);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void staleTransfersExpire() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("request", bytes(10));
+        final ChunkedTransfers.Outgoing outgoing = ChunkedTransfers.split(data, 4, nextTransferId);
+        sendChunks(outgoing);
+
+        scheduler.advance(ChunkedTransfers.STALE_TRANSFER_TIMEOUT_NANOS / 1_000_000 + 1);
+        receiver.resolve(outgoing.message);
+    }
+}
@@ -0,0 +1,62 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A clock and UI thread queue that only move when a test advances them.
+ */
+class FakeScheduler implements Scheduler {
+
+    private static final class Task {
+        final Runnable runnable;
+        final long runAtNanos;
+
+        Task(Runnable runnable, long runAtNanos) {
+            this.runnable = runnable;
+            this.runAtNanos = runAtNanos;
+        }
+    }
+
+    private long nowNanos = 1_000_000_000L;
+    private final List<Task> tasks = new ArrayList<>();
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return nowNanos;
+    }
+
+    @Override
+    public void runOnUiThread(@NonNull Runnable runnable, long delayInMs) {
+        tasks.add(new Task(runnable, nowNanos + delayInMs * 1_000_000));
+    }
+
+    @Override
+    public void cancelOnUiThread(@NonNull Runnable runnable) {
+        tasks.removeIf(task -> task.runnable == runnable);
+    }
+
+    /**
+     * Moves the clock and runs the tasks that are due, in the order they are due.
+     */
+    void advance(long ms) {
+        final long until = nowNanos + ms * 1_000_000;
+        while (true) {
+            Task next = null;
+            for (Task task : tasks) {
+                if (task.runAtNanos <= until && (next == null || task.runAtNanos < next.runAtNanos)) {
+                    next = task;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            tasks.remove(next);
+            nowNanos = Math.max(nowNanos, next.runAtNanos);
+            next.runnable.run();
+        }
+        nowNanos = until;
+    }
+}
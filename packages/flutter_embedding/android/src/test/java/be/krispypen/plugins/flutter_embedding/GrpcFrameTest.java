@@ -0,0 +1,54 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GrpcFrameTest {
+
+    /// The encoders leave the buffer positioned at its end, like the BinaryMessenger expects
+    private static ByteBuffer received(ByteBuffer sent) {
+        sent.flip();
+        return sent;
+    }
+
+    @Test
+    public void requestRoundTrip() {
+        final byte[] payload = {1, 2, 3, (byte) 0xFF};
+        final GrpcFrame.Request request = GrpcFrame.decodeRequest(received(
+                GrpcFrame.encodeRequest(42, "be.krispypen.Service", "M\u00e9todo", payload)));
+
+        assertEquals(42, request.callId);
+        assertEquals("be.krispypen.Service", request.service);
+        assertEquals("M\u00e9todo", request.method);
+        assertArrayEquals(payload, request.payload);
+    }
+
+    @Test
+    public void requestWithEmptyPayload() {
+        final GrpcFrame.Request request = GrpcFrame.decodeRequest(received(
+                GrpcFrame.encodeRequest(1, "Service", "method", new byte[0])));
+        assertEquals(0, request.payload.length);
+    }
+
+    @Test
+    public void responseRoundTrip() throws Exception {
+        final byte[] payload = {9, 8, 7};
+        assertArrayEquals(payload, GrpcFrame.decodeResponse(received(GrpcFrame.encodeResponse(payload))));
+        assertEquals(0, GrpcFrame.decodeResponse(received(GrpcFrame.encodeResponse(null))).length);
+    }
+
+    @Test
+    public void errorFrameThrowsItsMessage() {
+        try {
+            GrpcFrame.decodeResponse(received(GrpcFrame.encodeError(GrpcFrame.STATUS_BACKPRESSURE, "Too many handovers")));
+            fail();
+        } catch (Exception e) {
+            assertEquals("Too many handovers", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package be.krispypen.plugins.flutter_embedding;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HandoverLimiterTest {
+
+    private static class RecordingCall implements HandoverLimiter.Call {
+        long startedWithTimeout = -1;
+        Exception rejected;
+
+        boolean started() {
+            return startedWithTimeout >= 0;
+        }
+
+        @Override
+        public void start(long timeoutInMs) {
+            startedWithTimeout = timeoutInMs;
+        }
+
+        @Override
+        public void reject(@NonNull Exception e) {
+            rejected = e;
+        }
+    }
+
+    private FakeScheduler scheduler;
+    private HandoverLimiter limiter;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        limiter = new HandoverLimiter(scheduler);
+    }
+
+    @Test
+    public void startsCallsWithoutLimits() {
+        final RecordingCall call = new RecordingCall();
+        limiter.submit("engine", "handover", 1_000, call);
+        assertEquals(1_000, call.startedWithTimeout);
+    }
+
+    @Test
+    public void rejectsCallsOverTheLimit() {
+        limiter.configure(1, BackpressurePolicy.REJECT, 0);
+        limiter.submit("engine", "handover", 0, new RecordingCall());
+
+        final RecordingCall rejected = new RecordingCall();
+        limiter.submit("engine", "handover", 0, rejected);
+        assertTrue(rejected.rejected instanceof RejectedExecutionException);
+        assertEquals(1, limiter.rejectedCount());
+    }
+
+    @Test
+    public void queuedCallStartsOnReleaseWithTheTimeoutThatIsLeft() {
+        limiter.configure(1, BackpressurePolicy.QUEUE, 10);
+        final RecordingCall first = new RecordingCall();
+        final RecordingCall queued = new RecordingCall();
+        limiter.submit("engine", "handover", 0, first);
+        limiter.submit("engine", "handover", 1_000, queued);
+        assertEquals(1, limiter.queuedCount());
+        assertTrue(!queued.started());
+
+        scheduler.advance(400);
+        limiter.release("handover");
+        assertEquals(600, queued.startedWithTimeout);
+        assertEquals(0, limiter.queuedCount());
+    }
+
+    @Test
+    public void queuedCallTimesOutWhenItGetsNoRoom() {
+        limiter.configure(1, BackpressurePolicy.QUEUE, 10);
+        limiter.submit("engine", "handover", 0, new RecordingCall());
+        final RecordingCall queued = new RecordingCall();
+        limiter.submit("engine", "handover", 1_000, queued);
+
+        scheduler.advance(1_000);
+        assertTrue(queued.rejected instanceof TimeoutException);
+        assertEquals(0, limiter.queuedCount());
+    }
+
+    @Test
+    public void dropOldestMakesRoomForTheNewestCall() {
+        limiter.configure(1, BackpressurePolicy.DROP_OLDEST, 1);
+        limiter.submit("engine", "handover", 0, new RecordingCall());
+        final RecordingCall oldest = new RecordingCall();
+        final RecordingCall newest = new RecordingCall();
+        limiter.submit("engine", "handover", 0, oldest);
+        limiter.submit("engine", "handover", 0, newest);
+
+        assertTrue(oldest.rejected instanceof RejectedExecutionException);
+        assertNull(newest.rejected);
+        limiter.release("handover");
+        assertTrue(newest.started());
+    }
+
+    @Test
+    public void limitPerNameLeavesOtherNamesRunning() {
+        limiter.configure(0, BackpressurePolicy.QUEUE, 10);
+        limiter.setLimit("slow", 1);
+        limiter.submit("engine", "slow", 0, new RecordingCall());
+        final RecordingCall queued = new RecordingCall();
+        final RecordingCall other = new RecordingCall();
+        limiter.submit("engine", "slow", 0, queued);
+        limiter.submit("engine", "other", 0, other);
+
+        assertTrue(!queued.started());
+        assertTrue(other.started());
+        limiter.release("slow");
+        assertTrue(queued.started());
+    }
+
+    @Test
+    public void failAllRejectsTheQueuedCallsOfTheEngine() {
+        limiter.configure(1, BackpressurePolicy.QUEUE, 10);
+        limiter.submit("engine", "handover", 0, new RecordingCall());
+        final RecordingCall stopped = new RecordingCall();
+        final RecordingCall otherEngine = new RecordingCall();
+        limiter.submit("engine", "handover", 0, stopped);
+        limiter.submit("other", "handover", 0, otherEngine);
+
+        final Exception reason = new Exception("stopped");
+        limiter.failAll("engine", reason);
+        assertEquals(reason, stopped.rejected);
+        assertNull(otherEngine.rejected);
+        assertEquals(1, limiter.queuedCount());
+    }
+
+    @Test
+    public void callThatThrowsWhileStartingFreesItsPlace() {
+        limiter.configure(1, BackpressurePolicy.REJECT, 0);
+        final IllegalStateException failure = new IllegalStateException("broken responder");
+        final RecordingCall throwing = new RecordingCall() {
+            @Override
+            public void start(long timeoutInMs) {
+                throw failure;
+            }
+        };
+        limiter.submit("engine", "handover", 0, throwing);
+        assertEquals(failure, throwing.rejected);
+
+        final RecordingCall next = new RecordingCall();
+        limiter.submit("engine", "handover", 0, next);
+        assertTrue(next.started());
+    }
+}
@@ -1,3 +1,5 @@
+import 'dart:async';
+import 'dart:convert';
 import 'dart:developer';
 import 'dart:ui';
 
@@ -11,8 +13,35 @@ export 'flutter_embedding_io.dart' if (dart.library.js_interop) 'flutter_embeddi
 
 typedef Handler = Future<Object?> Function(Map<String, dynamic> arguments);
 typedef HandlerBinary = Future<Object?> Function(List<int> arguments);
+typedef GrpcHandler = Future<List<int>> Function(String method, Uint8List request);
 
 const String embeddingChannelName = 'flutter_embedding/embedding';
+const String bulkChannelName = 'flutter_embedding/embedding_bulk';
+const String grpcChannelName = 'flutter_embedding/grpc';
+const String _channelReadyMethod = 'internalChannelReady';
+
+/// Tells the native side with [_channelReadyMethod] that this side handles binary gRPC frames.
+const String _grpcFramesCapability = 'grpcFrames';
+const String _handoverBatchMethod = 'internalHandoverBatch';
+const String _chunkMethod = 'internalChunk';
+
+/// The [PlatformException.code] of a handover the native side didn't take because it already has
+/// too many handovers in flight, retry it later instead of right away.
+const String handoverBackpressureErrorCode = 'HANDOVER_BACKPRESSURE';
+const String _chunkedTransferMarker = 'internalChunkedTransfer';
+
+/// How long a value may wait for its next chunk or its handover before it is dropped, like on the
+/// native side.
+const Duration _staleTransferTimeout = Duration(seconds: 60);
+
+/// The lane a handover travels in, so bulk telemetry never delays interactive handovers.
+enum HandoverLane {
+  /// User facing and auth handovers.
+  interactive,
+
+  /// Telemetry like analytics events and debug logs, handled in order on their own native thread.
+  bulk,
+}
 
 class EmbeddingChannel {
   static final EmbeddingChannel instance = EmbeddingChannel._();
@@ -20,12 +49,61 @@ class EmbeddingChannel {
   final _platform = const MethodChannel(embeddingChannelName);
   final _nativeMessageHandlers = <String, List<Handler>>{};
 
+  /// The handovers and gRPC method names sent in the bulk lane.
+  ///
+  /// IMPORTANT: keep the defaults in sync with android/src/main/java/be/krispypen/plugins/flutter_embedding/Handover.java
+  Set<String> bulkHandovers = {'receiveAnalyticsEvent', 'receiveDebugLog', 'ReceiveAnalyticsEvent', 'ReceiveDebugLog'};
+  final _bulkPlatform = const MethodChannel(bulkChannelName);
+
+  /// False once the native side turned out not to handle the bulk lane
+  bool _bulkLaneAvailable = true;
+
+  /// Carries gRPC payloads without wrapping them in a map, see [_GrpcFrame]
+  final _grpcPlatform = const BasicMessageChannel<ByteData>(grpcChannelName, BinaryCodec());
+  final _grpcHandlers = <String, GrpcHandler>{};
+  int _nextGrpcCallId = 0;
+
+  /// The fire-and-forget handovers that are sent in batches, see [enableBatching]
+  Set<String> _batchedHandovers = const {};
+  int _maxBatchSize = 0;
+  Duration _maxBatchDelay = Duration.zero;
+  final _batch = <String, List<Map<String, dynamic>>>{};
+  int _batchLength = 0;
+  Timer? _batchTimer;
+  AppLifecycleListener? _batchLifecycleListener;
+
+  /// Byte values of handovers larger than this are sent to the native side in chunks of this size,
+  /// 0 sends every value in one piece.
+  ///
+  /// IMPORTANT: only enable this when the native side handles chunks, iOS doesn't yet.
+  int chunkSize = 0;
+  int _nextTransferId = 0;
+
+  /// Values the native side is sending in chunks, by transfer id
+  final _incomingTransfers = <int, _IncomingTransfer>{};
+  final _transferClock = Stopwatch()..start();
+
   EmbeddingChannel._() {
     _platform.setMethodCallHandler(nativeMethodCallHandler);
+    _grpcPlatform.setMessageHandler(nativeGrpcMessageHandler);
+    // Lets the native side flush the handovers it queued while this side wasn't listening yet
+    _platform.invokeMethod<void>(_channelReadyMethod, {_grpcFramesCapability: true}).catchError((Object e) {
+      log('Native side did not handle $_channelReadyMethod $e');
+    });
   }
 
   @visibleForTesting
   Future<dynamic> nativeMethodCallHandler(MethodCall methodCall) async {
+    if (methodCall.method == _chunkMethod) {
+      final chunk = methodCall.arguments as Map;
+      final now = _transferClock.elapsed;
+      _expireStaleTransfers(now);
+      (_incomingTransfers[chunk['id'] as int] ??= _IncomingTransfer())
+        ..lastChunk = now
+        ..value.add(chunk['data'] as Uint8List);
+      return null;
+    }
+
     log(
       'Received WhiteLabelModule message: ${methodCall.method} ${methodCall.arguments} ${methodCall.arguments.runtimeType}',
     );
@@ -35,6 +113,7 @@ class EmbeddingChannel {
       // Cast methodCall.arguments to Map<String, dynamic> if it's a Map
       final Map<String, dynamic> arguments =
           methodCall.arguments is Map ? Map<String, dynamic>.from(methodCall.arguments as Map) : <String, dynamic>{};
+      _resolveChunkedTransfers(arguments);
 
       for (final handler in nativeMessageHandlers) {
         final response = await handler(arguments);
@@ -60,9 +139,18 @@ class EmbeddingChannel {
     String method, {
     Map<String, dynamic> data = const {},
     bool withPerformanceTracing = false,
+    HandoverLane? lane,
   }) async {
+    if (isBatched(method)) {
+      addToBatch(method, data);
+      return null;
+    }
+
     try {
-      final response = await _platform.invokeMethod<T>(method, data);
+      if (chunkSize > 0) {
+        data = await _sendChunks(data);
+      }
+      final response = await _invokeInLane<T>(lane ?? laneOf(method), method, data);
       return response;
     } catch (e, stackTrace) {
       log('Handover $method failed $e $stackTrace');
@@ -70,6 +158,288 @@ class EmbeddingChannel {
       rethrow;
     }
   }
+
+  /// Sends the byte values of [data] larger than [chunkSize] in chunks, one after the other, and
+  /// returns [data] with a marker in place of each of them.
+  Future<Map<String, dynamic>> _sendChunks(Map<String, dynamic> data) async {
+    Map<String, dynamic>? chunked;
+    for (final entry in data.entries) {
+      final value = entry.value;
+      if (value is! Uint8List || value.length <= chunkSize) {
+        continue;
+      }
+
+      final id = ++_nextTransferId;
+      try {
+        for (var offset = 0; offset < value.length; offset += chunkSize) {
+          final end = offset + chunkSize < value.length ? offset + chunkSize : value.length;
+          await _platform.invokeMethod<void>(_chunkMethod, {'id': id, 'data': Uint8List.sublistView(value, offset, end)});
+        }
+      } on MissingPluginException {
+        // The native side doesn't handle chunks, send everything in one piece from now on
+        log('Native side did not handle $_chunkMethod');
+        chunkSize = 0;
+        return data;
+      }
+
+      (chunked ??= Map.of(data))[entry.key] = {_chunkedTransferMarker: id};
+    }
+
+    return chunked ?? data;
+  }
+
+  /// Swaps the markers in [arguments] for the values the native side sent in chunks, and fails
+  /// the handover when the chunks of a value are missing, so a marker never reaches a handler.
+  void _resolveChunkedTransfers(Map<String, dynamic> arguments) {
+    _expireStaleTransfers(_transferClock.elapsed);
+
+    for (final entry in arguments.entries.toList()) {
+      final value = entry.value;
+      if (value is Map && value[_chunkedTransferMarker] is int) {
+        final id = value[_chunkedTransferMarker] as int;
+        final transfer = _incomingTransfers.remove(id);
+        if (transfer == null) {
+          throw PlatformException(
+            code: 'HANDOVER_INCOMPLETE_TRANSFER',
+            message: 'Chunked transfer $id of ${entry.key} is missing or expired',
+          );
+        }
+        arguments[entry.key] = transfer.value.takeBytes();
+      }
+    }
+  }
+
+  /// Drops the values whose handover never arrived, for example because the native side gave up
+  /// halfway.
+  void _expireStaleTransfers(Duration now) {
+    _incomingTransfers.removeWhere((_, transfer) => now - transfer.lastChunk > _staleTransferTimeout);
+  }
+
+  HandoverLane laneOf(String handover) => bulkHandovers.contains(handover) ? HandoverLane.bulk : HandoverLane.interactive;
+
+  Future<T?> _invokeInLane<T>(HandoverLane lane, String method, Object? arguments) async {
+    if (lane == HandoverLane.bulk && _bulkLaneAvailable) {
+      try {
+        return await _bulkPlatform.invokeMethod<T>(method, arguments);
+      } on MissingPluginException {
+        // Priority lanes are not enabled on the native side
+        _bulkLaneAvailable = false;
+      }
+    }
+
+    return _platform.invokeMethod<T>(method, arguments);
+  }
+
+  /// Sends the fire-and-forget [handovers], like analytics events and debug logs, to the native side
+  /// in batches instead of one message per handover.
+  ///
+  /// [handovers] are handover names or gRPC method names, their invocations complete right away
+  /// without a response. A batch is sent when it holds [maxBatchSize] handovers, [maxDelay] after
+  /// its first handover, or when the app leaves the foreground.
+  void enableBatching(
+    Set<String> handovers, {
+    int maxBatchSize = 50,
+    Duration maxDelay = const Duration(milliseconds: 250),
+  }) {
+    _batchedHandovers = handovers;
+    _maxBatchSize = maxBatchSize;
+    _maxBatchDelay = maxDelay;
+    _batchLifecycleListener ??= AppLifecycleListener(
+      onStateChange: (state) {
+        if (state != AppLifecycleState.resumed) {
+          flushBatch();
+        }
+      },
+    );
+  }
+
+  bool isBatched(String handover) => _batchedHandovers.contains(handover);
+
+  /// Adds a handover to the current batch, [method] is what the native side receives it as.
+  void addToBatch(String method, Map<String, dynamic> data) {
+    (_batch[method] ??= <Map<String, dynamic>>[]).add(data);
+    _batchLength++;
+
+    if (_batchLength >= _maxBatchSize) {
+      flushBatch();
+    } else {
+      _batchTimer ??= Timer(_maxBatchDelay, flushBatch);
+    }
+  }
+
+  /// Sends the current batch to the native side.
+  Future<void> flushBatch() async {
+    _batchTimer?.cancel();
+    _batchTimer = null;
+    if (_batch.isEmpty) {
+      return;
+    }
+
+    final batch = Map.of(_batch);
+    _batch.clear();
+    _batchLength = 0;
+
+    try {
+      await _invokeInLane<void>(HandoverLane.bulk, _handoverBatchMethod, batch);
+    } catch (e) {
+      // The native side doesn't handle batches, send these one by one and stop batching
+      log('Native side did not handle $_handoverBatchMethod $e');
+      _batchedHandovers = const {};
+      for (final entry in batch.entries) {
+        for (final data in entry.value) {
+          invoke<void>(entry.key, data: data).catchError((Object _) {});
+        }
+      }
+    }
+  }
+
+  @visibleForTesting
+  Future<ByteData> nativeGrpcMessageHandler(ByteData? message) async {
+    if (message == null) {
+      return _GrpcFrame.encodeError('Empty gRPC frame');
+    }
+
+    final _GrpcRequest request;
+    try {
+      request = _GrpcFrame.decodeRequest(message);
+    } catch (e) {
+      log('Received an invalid gRPC frame $e');
+      return _GrpcFrame.encodeError('Invalid gRPC frame');
+    }
+
+    final handler = _grpcHandlers[request.service];
+    if (handler == null) {
+      return _GrpcFrame.encodeError('No gRPC service ${request.service}');
+    }
+
+    try {
+      return _GrpcFrame.encodeResponse(await handler(request.method, request.payload));
+    } catch (e, stackTrace) {
+      log('gRPC call ${request.service}/${request.method} failed $e $stackTrace');
+      return _GrpcFrame.encodeError(e.toString());
+    }
+  }
+
+  /// Handles the gRPC calls the native side makes on [service] through the binary channel.
+  VoidCallback onGrpc(String service, GrpcHandler handler) {
+    _grpcHandlers[service] = handler;
+
+    return () {
+      if (_grpcHandlers[service] == handler) {
+        _grpcHandlers.remove(service);
+      }
+    };
+  }
+
+  /// Invokes a gRPC call on the native side with the serialized protobuf [request].
+  ///
+  /// Returns null when the native side doesn't handle the binary channel, the caller should then
+  /// fall back to [invoke].
+  Future<Uint8List?> invokeGrpc(String service, String method, Uint8List request) async {
+    final callId = _nextGrpcCallId++;
+    final reply = await _grpcPlatform.send(_GrpcFrame.encodeRequest(callId, service, method, request));
+    if (reply == null) {
+      return null;
+    }
+
+    return _GrpcFrame.decodeResponse(reply, '$service/$method');
+  }
+}
+
+class _IncomingTransfer {
+  final value = BytesBuilder(copy: false);
+  Duration lastChunk = Duration.zero;
+}
+
+class _GrpcRequest {
+  const _GrpcRequest(this.callId, this.service, this.method, this.payload);
+
+  final int callId;
+  final String service;
+  final String method;
+  final Uint8List payload;
+}
+
+/// The frames sent on the binary gRPC channel.
+///
+/// IMPORTANT: keep this in sync with android/src/main/java/be/krispypen/plugins/flutter_embedding/GrpcFrame.java
+///
+/// request:  int32 call id | uint16 service length | service | uint16 method length | method | payload
+/// response: uint8 status  | payload, or the UTF-8 error message when the status is not [statusOk]
+abstract final class _GrpcFrame {
+  static const int statusOk = 0;
+  static const int statusError = 1;
+  static const int statusBackpressure = 2;
+
+  static ByteData encodeRequest(int callId, String service, String method, List<int> payload) {
+    final serviceBytes = utf8.encode(service);
+    final methodBytes = utf8.encode(method);
+    final bytes = Uint8List(4 + 2 + serviceBytes.length + 2 + methodBytes.length + payload.length);
+    final data = ByteData.sublistView(bytes);
+
+    var offset = 0;
+    data.setInt32(offset, callId);
+    offset += 4;
+    data.setUint16(offset, serviceBytes.length);
+    offset += 2;
+    bytes.setAll(offset, serviceBytes);
+    offset += serviceBytes.length;
+    data.setUint16(offset, methodBytes.length);
+    offset += 2;
+    bytes.setAll(offset, methodBytes);
+    offset += methodBytes.length;
+    bytes.setAll(offset, payload);
+
+    return data;
+  }
+
+  /// The payload is a view on the message, it is not copied.
+  static _GrpcRequest decodeRequest(ByteData message) {
+    final bytes = Uint8List.sublistView(message);
+
+    var offset = 0;
+    final callId = message.getInt32(offset);
+    offset += 4;
+    final serviceLength = message.getUint16(offset);
+    offset += 2;
+    final service = utf8.decode(Uint8List.sublistView(bytes, offset, offset + serviceLength));
+    offset += serviceLength;
+    final methodLength = message.getUint16(offset);
+    offset += 2;
+    final method = utf8.decode(Uint8List.sublistView(bytes, offset, offset + methodLength));
+    offset += methodLength;
+
+    return _GrpcRequest(callId, service, method, Uint8List.sublistView(bytes, offset));
+  }
+
+  static ByteData encodeResponse(List<int> payload) {
+    final bytes = Uint8List(1 + payload.length);
+    bytes[0] = statusOk;
+    bytes.setAll(1, payload);
+    return ByteData.sublistView(bytes);
+  }
+
+  static ByteData encodeError(String message) {
+    final messageBytes = utf8.encode(message);
+    final bytes = Uint8List(1 + messageBytes.length);
+    bytes[0] = statusError;
+    bytes.setAll(1, messageBytes);
+    return ByteData.sublistView(bytes);
+  }
+
+  static Uint8List decodeResponse(ByteData reply, String call) {
+    final bytes = Uint8List.sublistView(reply);
+    if (bytes.isEmpty) {
+      throw PlatformException(code: 'INVALID_RESPONSE', message: 'Empty gRPC response of $call');
+    }
+    if (bytes[0] != statusOk) {
+      throw PlatformException(
+        code: bytes[0] == statusBackpressure ? handoverBackpressureErrorCode : 'GRPC_ERROR',
+        message: utf8.decode(Uint8List.sublistView(bytes, 1)),
+      );
+    }
+    return Uint8List.sublistView(bytes, 1);
+  }
 }
 
 class MultiViewWebApp extends StatefulWidget {
@@ -14,12 +14,18 @@ class EmbeddingController {
 
   Completer<Map<String, dynamic>> startConfig = Completer<Map<String, dynamic>>();
 
+  /// The binary start config, or null when the engine was started with a JSON start config.
+  ///
+  /// The native side passes it base64 encoded as the second entrypoint argument.
+  Completer<Uint8List?> binaryStartConfig = Completer<Uint8List?>();
+
   EmbeddingController(List<String> args) {
     if (args.isNotEmpty) {
       startConfig.complete(jsonDecode(args.first));
     } else {
       startConfig.complete({});
     }
+    binaryStartConfig.complete(args.length > 1 ? base64Decode(args[1]) : null);
   }
 
   static EmbeddingController of(BuildContext context) {
@@ -60,27 +66,29 @@ class EmbeddingController {
   }
 
   void addEmbeddingHandoverService(Service service) {
+    // The native side uses the binary channel when it can, and the map based handover otherwise
+    embeddingChannel.onGrpc(service.$name, (method, request) => _handleServiceCall(service, method, request));
     embeddingChannel.on(service.$name, (args) async {
-      final serviceMethod = service.$lookupMethod(args['method'] as String);
-      final request = serviceMethod!.requestDeserializer(args['request'] as List<int>);
-      print('request: $request');
-      print('request type: ${request.runtimeType}');
-      // Create a properly typed stream using createRequestStream()
-      // This preserves the generic type from ServiceMethod<Q, R>
-      final sourceStream = Stream.value(request);
-      final subscription = sourceStream.listen(null);
-      final controller = serviceMethod.createRequestStream(subscription);
-      controller.add(request);
-      controller.close();
-
-      // Call handle with the properly typed stream
-      final response = await serviceMethod.handle(DummyServiceCall(), controller.stream, []).first;
-      print('response: $response');
-      final bytes = (response as GeneratedMessage).writeToBuffer();
-      return bytes;
+      return _handleServiceCall(service, args['method'] as String, args['request'] as List<int>);
     });
   }
 
+  Future<List<int>> _handleServiceCall(Service service, String method, List<int> requestData) async {
+    final serviceMethod = service.$lookupMethod(method);
+    final request = serviceMethod!.requestDeserializer(requestData);
+    // Create a properly typed stream using createRequestStream()
+    // This preserves the generic type from ServiceMethod<Q, R>
+    final sourceStream = Stream.value(request);
+    final subscription = sourceStream.listen(null);
+    final controller = serviceMethod.createRequestStream(subscription);
+    controller.add(request);
+    controller.close();
+
+    // Call handle with the properly typed stream
+    final response = await serviceMethod.handle(DummyServiceCall(), controller.stream, []).first;
+    return (response as GeneratedMessage).writeToBuffer();
+  }
+
   EmbeddingMethodClientChannel handoverChannel() {
     return EmbeddingMethodClientChannel(embeddingChannel);
   }
@@ -100,18 +108,30 @@ class EmbeddingMethodClientChannel extends ClientChannelBase {
     // do the call
     final serviceName = method.path.split('/')[1];
     final methodName = method.path.split('/')[2];
-    requests.first.then((request) {
+    requests.first.then((request) async {
       final requestData = (request as GeneratedMessage).writeToBuffer();
-      embeddingChannel
-          .invoke(serviceName, data: {'name': serviceName, 'method': methodName, 'data': requestData}).then((response) {
-        try {
-          final responseData = method.responseDeserializer(response!);
-          call.setResponse(responseData);
-        } catch (e, stackTrace) {
-          debugPrint('error: $e');
-          debugPrint('stackTrace: $stackTrace');
-        }
-      });
+      if (embeddingChannel.isBatched(methodName)) {
+        // Batched calls are fire and forget, so they get the default response message
+        embeddingChannel.addToBatch(serviceName, {'name': serviceName, 'method': methodName, 'data': requestData});
+        call.setResponse(method.responseDeserializer(const <int>[]));
+        return;
+      }
+      final data = {'name': serviceName, 'method': methodName, 'data': requestData};
+      final List<int>? response;
+      if (embeddingChannel.laneOf(methodName) == HandoverLane.bulk) {
+        response = await embeddingChannel.invoke(serviceName, data: data, lane: HandoverLane.bulk);
+      } else {
+        // The binary channel skips the map wrapping, hosts that don't handle it get the map based handover
+        response = await embeddingChannel.invokeGrpc(serviceName, methodName, requestData) ??
+            await embeddingChannel.invoke(serviceName, data: data);
+      }
+      try {
+        final responseData = method.responseDeserializer(response!);
+        call.setResponse(responseData);
+      } catch (e, stackTrace) {
+        debugPrint('error: $e');
+        debugPrint('stackTrace: $stackTrace');
+      }
     });
     return call;
   }
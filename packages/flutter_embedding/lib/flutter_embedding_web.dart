@@ -29,6 +29,9 @@ class EmbeddingController {
   Map<String, List<Handler>> handoverHandlers = {};
 
   Completer<Map<String, dynamic>> startConfig = Completer<Map<String, dynamic>>();
+
+  /// The web embedding only passes a JSON start config.
+  Completer<Uint8List?> binaryStartConfig = Completer<Uint8List?>()..complete(null);
   EmbeddingController(List<String> args);
 
   static EmbeddingController of(BuildContext context) {